@@ -0,0 +1,110 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} which reads a {@link ByteBuffer}, typically a memory-mapped file, and which supports marking.
+ *
+ * @since 2026.10.17
+ */
+final class ByteBufferInputStream
+    extends InputStream
+{
+
+  private final ByteBuffer byteBuffer;
+
+  ByteBufferInputStream(ByteBuffer byteBuffer)
+  {
+    this.byteBuffer = byteBuffer;
+    // As with a ByteArrayInputStream, resetting the stream with no prior marking goes back to its beginning
+    byteBuffer.mark();
+  }
+
+  /**
+   * @return a view over the whole content of the stream, which does not depend on how far the stream has been read
+   */
+  ByteBuffer content()
+  {
+    return (ByteBuffer) byteBuffer.duplicate().rewind();
+  }
+
+  @Override
+  public int read()
+  {
+    return byteBuffer.hasRemaining() == true ? byteBuffer.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length)
+  {
+    if (length == 0)
+    {
+      return 0;
+    }
+
+    if (byteBuffer.hasRemaining() == false)
+    {
+      return -1;
+    }
+
+    final int count = Math.min(length, byteBuffer.remaining());
+    byteBuffer.get(buffer, offset, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long count)
+  {
+    final int skipped = (int) Math.max(0, Math.min(count, byteBuffer.remaining()));
+    byteBuffer.position(byteBuffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available()
+  {
+    return byteBuffer.remaining();
+  }
+
+  @Override
+  public boolean markSupported()
+  {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readLimit)
+  {
+    byteBuffer.mark();
+  }
+
+  @Override
+  public synchronized void reset()
+  {
+    byteBuffer.reset();
+  }
+
+}
@@ -0,0 +1,324 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+
+import okhttp3.Dns;
+
+/**
+ * A {@link Dns} which keeps the resolved addresses in memory, see {@link OkHttpClientWebServiceCaller#computeDns()}.
+ * <p>
+ * <p>
+ * The addresses of a host are served from memory during the time-to-live. Once it has expired, the stale addresses are still served, during the
+ * stale duration, while they are resolved again in the background: hence, only the first lookup of a host, or the one which follows a long
+ * inactivity, waits for the underlying resolver. The {@link #prefetch(String...)} method resolves the known hosts ahead of the first request.
+ * A host is never resolved by several threads at the same time: the concurrent lookups of a host which is being resolved, in the background or
+ * not, wait for the same resolution.
+ * </p>
+ * <p>
+ * <p>
+ * Since OkHttp tries the addresses one after the other, the IPv6 and IPv4 addresses are interleaved, so that an unreachable address family only
+ * costs a single connection attempt.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public class CachingDns
+    implements Dns
+{
+
+  private static final class Entry
+  {
+
+    private final List<InetAddress> addresses;
+
+    private final long timestamp;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private Entry(List<InetAddress> addresses, long timestamp)
+    {
+      this.addresses = addresses;
+      this.timestamp = timestamp;
+    }
+
+  }
+
+  /**
+   * The background resolutions of all the instances run on the same two daemon threads.
+   */
+  private static final class ExecutorHolder
+  {
+
+    private static final ThreadPoolExecutor INSTANCE = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, "CachingDns");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    static
+    {
+      ExecutorHolder.INSTANCE.allowCoreThreadTimeOut(true);
+    }
+
+  }
+
+  public static final long DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS = 60 * 1000;
+
+  public static final long DEFAULT_STALE_DURATION_IN_MILLISECONDS = 10 * 60 * 1000;
+
+  private static final Logger log = LoggerFactory.getInstance(CachingDns.class);
+
+  public final long timeToLiveInMilliseconds;
+
+  /**
+   * How long the addresses are still served once their time-to-live has expired, while they are resolved again.
+   */
+  public final long staleDurationInMilliseconds;
+
+  private final Dns dns;
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * The resolutions in progress, per host.
+   */
+  private final ConcurrentMap<String, FutureTask<List<InetAddress>>> resolutions = new ConcurrentHashMap<>();
+
+  public CachingDns()
+  {
+    this(Dns.SYSTEM, CachingDns.DEFAULT_TIME_TO_LIVE_IN_MILLISECONDS, CachingDns.DEFAULT_STALE_DURATION_IN_MILLISECONDS);
+  }
+
+  /**
+   * @param dns the underlying resolver
+   */
+  public CachingDns(Dns dns, long timeToLiveInMilliseconds, long staleDurationInMilliseconds)
+  {
+    this.dns = dns;
+    this.timeToLiveInMilliseconds = timeToLiveInMilliseconds;
+    this.staleDurationInMilliseconds = staleDurationInMilliseconds;
+  }
+
+  @Override
+  public List<InetAddress> lookup(String hostname)
+      throws UnknownHostException
+  {
+    final Entry entry = entries.get(hostname);
+
+    if (entry != null)
+    {
+      final long age = System.currentTimeMillis() - entry.timestamp;
+
+      if (age < timeToLiveInMilliseconds)
+      {
+        return entry.addresses;
+      }
+
+      if (age < timeToLiveInMilliseconds + staleDurationInMilliseconds)
+      {
+        if (entry.refreshing.compareAndSet(false, true) == true)
+        {
+          resolveInBackground(hostname, entry);
+        }
+
+        return entry.addresses;
+      }
+    }
+
+    return resolve(hostname);
+  }
+
+  /**
+   * Resolves the given hosts in the background, so that their first lookup is served from memory.
+   *
+   * @param hostnames the hosts to resolve
+   */
+  public void prefetch(String... hostnames)
+  {
+    for (final String hostname : hostnames)
+    {
+      if (hostname != null && entries.containsKey(hostname) == false && resolutions.containsKey(hostname) == false)
+      {
+        resolveInBackground(hostname, null);
+      }
+    }
+  }
+
+  /**
+   * Forgets all the resolved addresses, typically when the network has changed.
+   */
+  public void clear()
+  {
+    entries.clear();
+  }
+
+  /**
+   * Resolves the given host on the calling thread, unless it is already being resolved, in which case that resolution is waited for.
+   */
+  private List<InetAddress> resolve(final String hostname)
+      throws UnknownHostException
+  {
+    final FutureTask<List<InetAddress>> resolution = new FutureTask<>(new Callable<List<InetAddress>>()
+    {
+      @Override
+      public List<InetAddress> call()
+          throws UnknownHostException
+      {
+        final List<InetAddress> addresses = interleave(dns.lookup(hostname));
+        entries.put(hostname, new Entry(addresses, System.currentTimeMillis()));
+        return addresses;
+      }
+    });
+    final FutureTask<List<InetAddress>> pendingResolution = resolutions.putIfAbsent(hostname, resolution);
+
+    if (pendingResolution == null)
+    {
+      try
+      {
+        resolution.run();
+      }
+      finally
+      {
+        resolutions.remove(hostname, resolution);
+      }
+    }
+
+    try
+    {
+      return (pendingResolution == null ? resolution : pendingResolution).get();
+    }
+    catch (InterruptedException exception)
+    {
+      Thread.currentThread().interrupt();
+      throw new UnknownHostException("Interrupted while waiting for the resolution of the host '" + hostname + "'");
+    }
+    catch (ExecutionException exception)
+    {
+      final Throwable cause = exception.getCause();
+
+      if (cause instanceof UnknownHostException)
+      {
+        throw (UnknownHostException) cause;
+      }
+
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+
+      throw (Error) cause;
+    }
+  }
+
+  private void resolveInBackground(final String hostname, final Entry entry)
+  {
+    ExecutorHolder.INSTANCE.execute(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          resolve(hostname);
+        }
+        catch (Exception exception)
+        {
+          if (log.isDebugEnabled() == true)
+          {
+            log.debug("Could not resolve the host '" + hostname + "' in the background: " + exception.getMessage());
+          }
+
+          if (entry != null)
+          {
+            // The next lookup will try again
+            entry.refreshing.set(false);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * @return the addresses, the families of the consecutive ones alternating as long as possible, the family of the first address coming first
+   */
+  private static List<InetAddress> interleave(List<InetAddress> addresses)
+  {
+    if (addresses.size() <= 1)
+    {
+      return Collections.unmodifiableList(new ArrayList<>(addresses));
+    }
+
+    final boolean firstIsIPv6 = addresses.get(0) instanceof Inet6Address;
+    final List<InetAddress> firstFamily = new ArrayList<>();
+    final List<InetAddress> secondFamily = new ArrayList<>();
+
+    for (final InetAddress address : addresses)
+    {
+      (address instanceof Inet6Address == firstIsIPv6 ? firstFamily : secondFamily).add(address);
+    }
+
+    final List<InetAddress> interleaved = new ArrayList<>(addresses.size());
+
+    for (int index = 0; index < Math.max(firstFamily.size(), secondFamily.size()); index++)
+    {
+      if (index < firstFamily.size())
+      {
+        interleaved.add(firstFamily.get(index));
+      }
+
+      if (index < secondFamily.size())
+      {
+        interleaved.add(secondFamily.get(index));
+      }
+    }
+
+    return Collections.unmodifiableList(interleaved);
+  }
+
+}
@@ -0,0 +1,178 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Gathers the calls started on behalf of a same screen or job, so that they may all be cancelled at once when it is torn down, see
+ * {@link OkHttpClientWebServiceCaller#getCallGroup(String, com.smartnsoft.droid4me.ws.WebServiceClient.CallType, java.util.Map)}.
+ * <p>
+ * <p>
+ * A call belongs to the group from its start until its response body is closed, or until it fails. Once the {@link #cancelAll()} method has been
+ * invoked, the calls which join the group, typically the retries scheduled meanwhile, are cancelled right away: a new group should hence be
+ * used for a new screen or job.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public final class CallGroup
+{
+
+  /**
+   * Registers the calls whose request holds a {@code CallGroup} tag into that group. It must be the first interceptor, so that a call is registered
+   * only once, whatever the attempts it runs.
+   */
+  public static final class CallGroupInterceptor
+      implements Interceptor
+  {
+
+    @Override
+    public Response intercept(Chain chain)
+        throws IOException
+    {
+      final Request request = chain.request();
+      final CallGroup callGroup = request.tag(CallGroup.class);
+
+      if (callGroup == null)
+      {
+        return chain.proceed(request);
+      }
+
+      final Call call = chain.call();
+
+      if (callGroup.add(call) == false)
+      {
+        call.cancel();
+        throw new IOException("Canceled");
+      }
+
+      final Response response;
+
+      try
+      {
+        response = chain.proceed(request);
+      }
+      catch (IOException | RuntimeException exception)
+      {
+        callGroup.remove(call);
+        throw exception;
+      }
+
+      final ResponseBody body = response.body();
+
+      if (body == null)
+      {
+        callGroup.remove(call);
+        return response;
+      }
+
+      // The call leaves the group once its response has been consumed, which releases its connection
+      final ResponseBody groupBody = ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(new ForwardingSource(body.source())
+      {
+        @Override
+        public void close()
+            throws IOException
+        {
+          try
+          {
+            super.close();
+          }
+          finally
+          {
+            callGroup.remove(call);
+          }
+        }
+      }));
+
+      return response.newBuilder().body(groupBody).build();
+    }
+
+  }
+
+  private final Set<Call> calls = Collections.newSetFromMap(new ConcurrentHashMap<Call, Boolean>());
+
+  private volatile boolean cancelled;
+
+  /**
+   * Cancels all the calls of the group which are still running, as well as the ones which will join it later on. Their connections are released,
+   * and the pending reads of their responses fail.
+   */
+  public void cancelAll()
+  {
+    cancelled = true;
+
+    for (final Call call : calls)
+    {
+      call.cancel();
+    }
+  }
+
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  /**
+   * @return the number of calls of the group which are still running
+   */
+  public int getCallsCount()
+  {
+    return calls.size();
+  }
+
+  /**
+   * @return {@code false} if the group has been cancelled, in which case the call has not been added
+   */
+  boolean add(Call call)
+  {
+    calls.add(call);
+
+    // The group is checked after the call has been added, so that a concurrent cancellation cannot miss it
+    if (cancelled == true)
+    {
+      calls.remove(call);
+      return false;
+    }
+
+    return true;
+  }
+
+  void remove(Call call)
+  {
+    calls.remove(call);
+  }
+
+}
@@ -0,0 +1,307 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A circuit breaker per host, see {@link OkHttpClientWebServiceCaller#getCircuitBreaker()}.
+ * <p>
+ * <p>
+ * The circuit of a host is closed as long as its calls behave. It opens when, among the latest calls, the rate of the failed calls or the rate of
+ * the slow calls reaches its threshold: the calls to that host then fail immediately with a {@link CircuitOpenException}, instead of waiting for a
+ * time-out. Once the open state duration has elapsed, the circuit is half-open: a few trial calls are let through, and the circuit closes again if
+ * they all succeed, or opens again as soon as one of them fails.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public class CircuitBreaker
+{
+
+  public enum State
+  {
+    Closed, Open, HalfOpen
+  }
+
+  /**
+   * The exception the calls to a host fail with, while its circuit is open.
+   */
+  public static final class CircuitOpenException
+      extends IOException
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    public final String host;
+
+    public CircuitOpenException(String host)
+    {
+      super("The circuit breaker of the host '" + host + "' is open");
+      this.host = host;
+    }
+
+  }
+
+  /**
+   * The state of the circuit of a host, over a sliding window of its latest calls.
+   */
+  private final class HostCircuit
+  {
+
+    private final boolean[] failedCalls = new boolean[slidingWindowSize];
+
+    private final boolean[] slowCalls = new boolean[slidingWindowSize];
+
+    private int callsCount;
+
+    private int callIndex;
+
+    private int failedCallsCount;
+
+    private int slowCallsCount;
+
+    private State state = State.Closed;
+
+    private long openedTimestamp;
+
+    private int permittedTrialCallsCount;
+
+    private int succeededTrialCallsCount;
+
+    synchronized State getState()
+    {
+      if (state == State.Open && System.currentTimeMillis() - openedTimestamp >= openStateDurationInMilliseconds)
+      {
+        state = State.HalfOpen;
+        permittedTrialCallsCount = 0;
+        succeededTrialCallsCount = 0;
+      }
+
+      return state;
+    }
+
+    synchronized boolean tryAcquirePermission()
+    {
+      switch (getState())
+      {
+        case Closed:
+          return true;
+        case HalfOpen:
+          if (permittedTrialCallsCount < halfOpenTrialCallsCount)
+          {
+            permittedTrialCallsCount++;
+            return true;
+          }
+          return false;
+        default:
+          return false;
+      }
+    }
+
+    synchronized void onCallOver(boolean failed, boolean slow)
+    {
+      if (state == State.HalfOpen)
+      {
+        if (failed == true || slow == true)
+        {
+          open();
+        }
+        else if (++succeededTrialCallsCount >= halfOpenTrialCallsCount)
+        {
+          close();
+        }
+
+        return;
+      }
+
+      if (state == State.Open)
+      {
+        // A call which started before the circuit opened
+        return;
+      }
+
+      if (callsCount == slidingWindowSize)
+      {
+        failedCallsCount -= failedCalls[callIndex] == true ? 1 : 0;
+        slowCallsCount -= slowCalls[callIndex] == true ? 1 : 0;
+      }
+      else
+      {
+        callsCount++;
+      }
+
+      failedCalls[callIndex] = failed;
+      slowCalls[callIndex] = slow;
+      failedCallsCount += failed == true ? 1 : 0;
+      slowCallsCount += slow == true ? 1 : 0;
+      callIndex = (callIndex + 1) % slidingWindowSize;
+
+      if (callsCount >= minimumCallsCount && ((float) failedCallsCount / callsCount >= failureRateThreshold || (float) slowCallsCount / callsCount >= slowCallRateThreshold))
+      {
+        open();
+      }
+    }
+
+    synchronized void onCallCanceled()
+    {
+      // The trial slot of a cancelled call is given back, so that the circuit does not stay half-open for lack of trial calls
+      if (state == State.HalfOpen && permittedTrialCallsCount > succeededTrialCallsCount)
+      {
+        permittedTrialCallsCount--;
+      }
+    }
+
+    private void open()
+    {
+      state = State.Open;
+      openedTimestamp = System.currentTimeMillis();
+    }
+
+    private void close()
+    {
+      state = State.Closed;
+      callsCount = 0;
+      callIndex = 0;
+      failedCallsCount = 0;
+      slowCallsCount = 0;
+    }
+
+  }
+
+  public static final float DEFAULT_FAILURE_RATE_THRESHOLD = 0.5f;
+
+  public static final float DEFAULT_SLOW_CALL_RATE_THRESHOLD = 0.8f;
+
+  public static final long DEFAULT_SLOW_CALL_DURATION_IN_MILLISECONDS = 5 * 1000;
+
+  public static final int DEFAULT_SLIDING_WINDOW_SIZE = 20;
+
+  public static final int DEFAULT_MINIMUM_CALLS_COUNT = 10;
+
+  public static final long DEFAULT_OPEN_STATE_DURATION_IN_MILLISECONDS = 30 * 1000;
+
+  public static final int DEFAULT_HALF_OPEN_TRIAL_CALLS_COUNT = 3;
+
+  public final float failureRateThreshold;
+
+  public final float slowCallRateThreshold;
+
+  public final long slowCallDurationInMilliseconds;
+
+  /**
+   * The number of latest calls of a host the rates are computed on.
+   */
+  public final int slidingWindowSize;
+
+  /**
+   * The minimum number of calls of a host before its rates are taken into account.
+   */
+  public final int minimumCallsCount;
+
+  public final long openStateDurationInMilliseconds;
+
+  public final int halfOpenTrialCallsCount;
+
+  private final ConcurrentMap<String, HostCircuit> hostCircuits = new ConcurrentHashMap<>();
+
+  public CircuitBreaker()
+  {
+    this(CircuitBreaker.DEFAULT_FAILURE_RATE_THRESHOLD, CircuitBreaker.DEFAULT_SLOW_CALL_RATE_THRESHOLD, CircuitBreaker.DEFAULT_SLOW_CALL_DURATION_IN_MILLISECONDS, CircuitBreaker.DEFAULT_SLIDING_WINDOW_SIZE, CircuitBreaker.DEFAULT_MINIMUM_CALLS_COUNT, CircuitBreaker.DEFAULT_OPEN_STATE_DURATION_IN_MILLISECONDS, CircuitBreaker.DEFAULT_HALF_OPEN_TRIAL_CALLS_COUNT);
+  }
+
+  public CircuitBreaker(float failureRateThreshold, float slowCallRateThreshold, long slowCallDurationInMilliseconds,
+      int slidingWindowSize, int minimumCallsCount, long openStateDurationInMilliseconds, int halfOpenTrialCallsCount)
+  {
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallDurationInMilliseconds = slowCallDurationInMilliseconds;
+    this.slidingWindowSize = Math.max(1, slidingWindowSize);
+    this.minimumCallsCount = Math.max(1, Math.min(minimumCallsCount, this.slidingWindowSize));
+    this.openStateDurationInMilliseconds = openStateDurationInMilliseconds;
+    this.halfOpenTrialCallsCount = Math.max(1, halfOpenTrialCallsCount);
+  }
+
+  public State getState(String host)
+  {
+    final HostCircuit hostCircuit = hostCircuits.get(host);
+    return hostCircuit == null ? State.Closed : hostCircuit.getState();
+  }
+
+  /**
+   * Indicates whether a call to the given host may be run. When the method returns {@code true}, the outcome of the call must be reported through
+   * the {@link #onCallOver(String, boolean, long)} method.
+   *
+   * @param host the host of the call
+   * @return {@code false} if the call must fail right away
+   */
+  public boolean tryAcquirePermission(String host)
+  {
+    return getHostCircuit(host).tryAcquirePermission();
+  }
+
+  /**
+   * Reports the outcome of a call which has been permitted.
+   *
+   * @param host                   the host of the call
+   * @param failed                 whether the call has failed, either with an exception or with a server error
+   * @param durationInMilliseconds the duration of the call
+   */
+  public void onCallOver(String host, boolean failed, long durationInMilliseconds)
+  {
+    getHostCircuit(host).onCallOver(failed, durationInMilliseconds >= slowCallDurationInMilliseconds);
+  }
+
+  /**
+   * Reports that a call which has been permitted has been cancelled, or that its thread has been interrupted. The call is neither held against its
+   * host nor counted as a success, and its half-open trial slot, if any, is released.
+   *
+   * @param host the host of the call
+   */
+  public void onCallCanceled(String host)
+  {
+    getHostCircuit(host).onCallCanceled();
+  }
+
+  private HostCircuit getHostCircuit(String host)
+  {
+    HostCircuit hostCircuit = hostCircuits.get(host);
+
+    if (hostCircuit == null)
+    {
+      final HostCircuit newHostCircuit = new HostCircuit();
+      hostCircuit = hostCircuits.putIfAbsent(host, newHostCircuit);
+
+      if (hostCircuit == null)
+      {
+        hostCircuit = newHostCircuit;
+      }
+    }
+
+    return hostCircuit;
+  }
+
+}
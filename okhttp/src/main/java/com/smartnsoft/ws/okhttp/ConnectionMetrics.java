@@ -0,0 +1,165 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * An {@link EventListener} which measures how the calls are spread over the connections, see
+ * {@link OkHttpClientWebServiceCaller#getConnectionMetrics()}.
+ * <p>
+ * <p>
+ * For each connection still alive, it exposes the number of calls currently carried, its peak, and the maximum number of calls it may carry at
+ * the same time, when it is known. The connections are forgotten once they are discarded by the pool.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public class ConnectionMetrics
+    extends EventListener
+{
+
+  /**
+   * A snapshot of the metrics of a connection.
+   */
+  public static final class ConnectionStatistics
+  {
+
+    public final String host;
+
+    public final Protocol protocol;
+
+    /**
+     * The number of calls the connection currently carries.
+     */
+    public final int activeStreamsCount;
+
+    public final int peakStreamsCount;
+
+    /**
+     * The maximum number of calls the connection may carry at the same time, i.e. {@code 1} for an HTTP/1.x connection, or {@code -1} for an
+     * HTTP/2 one, since OkHttp does not expose the {@code SETTINGS_MAX_CONCURRENT_STREAMS} of the server.
+     */
+    public final int maximumStreamsCount;
+
+    /**
+     * The total number of calls the connection has carried.
+     */
+    public final long callsCount;
+
+    ConnectionStatistics(String host, Protocol protocol, int activeStreamsCount, int peakStreamsCount, int maximumStreamsCount, long callsCount)
+    {
+      this.host = host;
+      this.protocol = protocol;
+      this.activeStreamsCount = activeStreamsCount;
+      this.peakStreamsCount = peakStreamsCount;
+      this.maximumStreamsCount = maximumStreamsCount;
+      this.callsCount = callsCount;
+    }
+
+    @Override
+    public String toString()
+    {
+      return host + " (" + protocol + "): " + activeStreamsCount + "/" + maximumStreamsCount + " streams, peak " + peakStreamsCount + ", " + callsCount + " calls";
+    }
+
+  }
+
+  private static final class ConnectionState
+  {
+
+    private int activeStreamsCount;
+
+    private int peakStreamsCount;
+
+    private long callsCount;
+
+  }
+
+  // The connections are weakly referenced, so that they are forgotten once the pool has discarded them
+  private final Map<Connection, ConnectionState> connectionStates = new WeakHashMap<>();
+
+  @Override
+  public void connectionAcquired(Call call, Connection connection)
+  {
+    synchronized (connectionStates)
+    {
+      ConnectionState connectionState = connectionStates.get(connection);
+
+      if (connectionState == null)
+      {
+        connectionState = new ConnectionState();
+        connectionStates.put(connection, connectionState);
+      }
+
+      connectionState.activeStreamsCount++;
+      connectionState.peakStreamsCount = Math.max(connectionState.peakStreamsCount, connectionState.activeStreamsCount);
+      connectionState.callsCount++;
+    }
+  }
+
+  @Override
+  public void connectionReleased(Call call, Connection connection)
+  {
+    synchronized (connectionStates)
+    {
+      final ConnectionState connectionState = connectionStates.get(connection);
+
+      if (connectionState != null && connectionState.activeStreamsCount > 0)
+      {
+        connectionState.activeStreamsCount--;
+      }
+    }
+  }
+
+  /**
+   * @return the metrics of the connections which are still alive
+   */
+  public List<ConnectionStatistics> getConnectionStatistics()
+  {
+    synchronized (connectionStates)
+    {
+      final List<ConnectionStatistics> connectionStatistics = new ArrayList<>(connectionStates.size());
+
+      for (final Map.Entry<Connection, ConnectionState> entry : connectionStates.entrySet())
+      {
+        final Connection connection = entry.getKey();
+        final ConnectionState connectionState = entry.getValue();
+        final int maximumStreamsCount = connection.protocol() == Protocol.HTTP_1_0 || connection.protocol() == Protocol.HTTP_1_1 ? 1 : -1;
+        connectionStatistics.add(new ConnectionStatistics(connection.route().address().url().host(), connection.protocol(), connectionState.activeStreamsCount, connectionState.peakStreamsCount, maximumStreamsCount, connectionState.callsCount));
+      }
+
+      return connectionStatistics;
+    }
+  }
+
+}
@@ -0,0 +1,149 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.util.zip.Inflater;
+
+import org.brotli.dec.BrotliInputStream;
+
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.GzipSource;
+import okio.InflaterSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Decodes a response body, according to its {@code Content-Encoding} header.
+ * <p>
+ * <p>
+ * The decoding is performed incrementally, while the body is being read.
+ * </p>
+ *
+ * @see OkHttpClientWebServiceCaller#getContentDecoders()
+ * @since 2026.10.17
+ */
+public interface ContentDecoder
+{
+
+  /**
+   * The {@code gzip} decoder.
+   */
+  ContentDecoder GZIP = new ContentDecoder()
+  {
+    @Override
+    public String getEncoding()
+    {
+      return "gzip";
+    }
+
+    @Override
+    public Source decode(BufferedSource source)
+    {
+      return new GzipSource(source);
+    }
+  };
+
+  /**
+   * The {@code deflate} decoder, which accepts both the zlib format mandated by the HTTP specification and the raw deflate format some servers
+   * send instead.
+   */
+  ContentDecoder DEFLATE = new ContentDecoder()
+  {
+    @Override
+    public String getEncoding()
+    {
+      return "deflate";
+    }
+
+    @Override
+    public Source decode(BufferedSource source)
+        throws IOException
+    {
+      boolean zlibWrapped = false;
+
+      if (source.request(2) == true)
+      {
+        // The zlib header announces the deflate compression method, and is a multiple of 31
+        final int header = (source.buffer().getByte(0) & 0xFF) << 8 | (source.buffer().getByte(1) & 0xFF);
+        zlibWrapped = (header & 0x0F00) == 0x0800 && header % 31 == 0;
+      }
+
+      final Inflater inflater = new Inflater(zlibWrapped == false);
+
+      return new ForwardingSource(new InflaterSource(source, inflater))
+      {
+        @Override
+        public void close()
+            throws IOException
+        {
+          try
+          {
+            super.close();
+          }
+          finally
+          {
+            // Releases the native memory of the inflater right away
+            inflater.end();
+          }
+        }
+      };
+    }
+  };
+
+  /**
+   * The {@code br} decoder, which relies on a pure Java Brotli implementation.
+   */
+  ContentDecoder BROTLI = new ContentDecoder()
+  {
+    @Override
+    public String getEncoding()
+    {
+      return "br";
+    }
+
+    @Override
+    public Source decode(BufferedSource source)
+        throws IOException
+    {
+      return Okio.source(new BrotliInputStream(source.inputStream()));
+    }
+  };
+
+  /**
+   * @return the {@code Content-Encoding} token handled by the decoder, which is also sent through the {@code Accept-Encoding} header
+   */
+  String getEncoding();
+
+  /**
+   * Is responsible for decoding the provided response body.
+   *
+   * @param source the encoded response body
+   * @return the decoded response body; closing it must close the provided {@code source}
+   * @throws IOException if the decoding could not start
+   */
+  Source decode(BufferedSource source)
+      throws IOException;
+
+}
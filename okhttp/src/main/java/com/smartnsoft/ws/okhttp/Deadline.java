@@ -0,0 +1,132 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The instant a call must be over by, across all its attempts: its retries and the waits between them, its hedged call, and the time it spends
+ * waiting for a {@link PriorityScheduler} slot. It is attached to the requests as a typed tag, see
+ * {@link OkHttpClientWebServiceCaller#getDeadlineInMilliseconds(String, com.smartnsoft.droid4me.ws.WebServiceClient.CallType, java.util.Map)}.
+ *
+ * @since 2026.10.17
+ */
+public final class Deadline
+{
+
+  /**
+   * The exception a call fails with, when its deadline has expired before an attempt.
+   */
+  public static final class DeadlineExceededException
+      extends InterruptedIOException
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException()
+    {
+      super("The deadline of the call has expired");
+    }
+
+  }
+
+  /**
+   * Shrinks the timeouts of each attempt to the remaining budget of the {@code Deadline} of its call, and fails the attempts once it has expired.
+   * It should come after the interceptors which make the calls wait, so that the time waited is taken from the budget of the attempt.
+   */
+  public static final class DeadlineInterceptor
+      implements Interceptor
+  {
+
+    @Override
+    public Response intercept(Chain chain)
+        throws IOException
+    {
+      final Request request = chain.request();
+      final Deadline deadline = request.tag(Deadline.class);
+
+      if (deadline == null || request.cacheControl().onlyIfCached() == true)
+      {
+        return chain.proceed(request);
+      }
+
+      final long remainingInMilliseconds = deadline.getRemainingInMilliseconds();
+
+      if (remainingInMilliseconds <= 0)
+      {
+        throw new DeadlineExceededException();
+      }
+
+      return chain
+          .withConnectTimeout(shrink(chain.connectTimeoutMillis(), remainingInMilliseconds), TimeUnit.MILLISECONDS)
+          .withReadTimeout(shrink(chain.readTimeoutMillis(), remainingInMilliseconds), TimeUnit.MILLISECONDS)
+          .withWriteTimeout(shrink(chain.writeTimeoutMillis(), remainingInMilliseconds), TimeUnit.MILLISECONDS)
+          .proceed(request);
+    }
+
+    /**
+     * @return the smallest of the timeout and the remaining budget, a zero timeout meaning no timeout
+     */
+    private static int shrink(int timeoutInMilliseconds, long remainingInMilliseconds)
+    {
+      return (int) (timeoutInMilliseconds <= 0 ? Math.min(remainingInMilliseconds, Integer.MAX_VALUE) : Math.min(timeoutInMilliseconds, remainingInMilliseconds));
+    }
+
+  }
+
+  /**
+   * @return the deadline which expires after the given duration from now
+   */
+  public static Deadline after(long durationInMilliseconds)
+  {
+    return new Deadline(System.currentTimeMillis() + durationInMilliseconds);
+  }
+
+  /**
+   * The instant, expressed as a {@link System#currentTimeMillis()} value.
+   */
+  public final long timestampInMilliseconds;
+
+  public Deadline(long timestampInMilliseconds)
+  {
+    this.timestampInMilliseconds = timestampInMilliseconds;
+  }
+
+  public long getRemainingInMilliseconds()
+  {
+    return timestampInMilliseconds - System.currentTimeMillis();
+  }
+
+  public boolean isExpired()
+  {
+    return getRemainingInMilliseconds() <= 0;
+  }
+
+}
@@ -0,0 +1,82 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * A {@link RequestBody} which gzips another body while it is being sent, without building the compressed body in memory first.
+ * <p>
+ * <p>
+ * The request must hold a {@code Content-Encoding: gzip} header. Since the compressed size is not known in advance, the body is sent with the
+ * chunked transfer encoding.
+ * </p>
+ *
+ * @see OkHttpClientWebServiceCaller#getBodyCompressionThreshold(String, com.smartnsoft.droid4me.ws.WebServiceClient.CallType, java.util.Map, OkHttpClientWebServiceCaller.RequestBodyType)
+ * @since 2026.10.17
+ */
+public final class GzipRequestBody
+    extends RequestBody
+{
+
+  private final RequestBody body;
+
+  public GzipRequestBody(RequestBody body)
+  {
+    this.body = body;
+  }
+
+  RequestBody getBody()
+  {
+    return body;
+  }
+
+  @Override
+  public MediaType contentType()
+  {
+    return body.contentType();
+  }
+
+  @Override
+  public long contentLength()
+  {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink)
+      throws IOException
+  {
+    final BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+    body.writeTo(gzipSink);
+    // Writes the gzip trailer
+    gzipSink.close();
+  }
+
+}
@@ -0,0 +1,143 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.ws.okhttp;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.Headers;
+
+/**
+ * A read-only {@link Map} view over the {@link Headers} of an HTTP response, which is used as the {@link
+ * com.smartnsoft.droid4me.ws.WebServiceClient.HttpResponse#headers} of the responses.
+ * <p>
+ * <p>
+ * As with the former {@link java.util.HashMap} implementation, the keys are the header names as received, and the values the list of the header
+ * values for that name. No list is created until a header name is looked up, and the entries are only materialized when the map is iterated over.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public final class HeadersMap
+    extends AbstractMap<String, List<String>>
+{
+
+  private final Headers headers;
+
+  private volatile Set<Entry<String, List<String>>> entrySet;
+
+  public HeadersMap(Headers headers)
+  {
+    this.headers = headers;
+  }
+
+  @Override
+  public boolean isEmpty()
+  {
+    return headers.size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    if (key instanceof String)
+    {
+      for (int index = 0, size = headers.size(); index < size; index++)
+      {
+        if (headers.name(index).equals(key) == true)
+        {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  @Override
+  public List<String> get(Object key)
+  {
+    if (key instanceof String)
+    {
+      List<String> values = null;
+
+      for (int index = 0, size = headers.size(); index < size; index++)
+      {
+        if (headers.name(index).equals(key) == true)
+        {
+          if (values == null)
+          {
+            values = new ArrayList<>(2);
+          }
+
+          values.add(headers.value(index));
+        }
+      }
+
+      if (values != null)
+      {
+        return Collections.unmodifiableList(values);
+      }
+    }
+
+    return null;
+  }
+
+  @Override
+  public Set<Entry<String, List<String>>> entrySet()
+  {
+    if (entrySet == null)
+    {
+      final Map<String, List<String>> headerFields = new LinkedHashMap<>();
+
+      for (int index = 0, size = headers.size(); index < size; index++)
+      {
+        final String headerName = headers.name(index);
+        List<String> values = headerFields.get(headerName);
+
+        if (values == null)
+        {
+          values = new ArrayList<>(2);
+          headerFields.put(headerName, values);
+        }
+
+        values.add(headers.value(index));
+      }
+
+      for (final Entry<String, List<String>> headerField : headerFields.entrySet())
+      {
+        headerField.setValue(Collections.unmodifiableList(headerField.getValue()));
+      }
+
+      entrySet = Collections.unmodifiableMap(headerFields).entrySet();
+    }
+
+    return entrySet;
+  }
+
+}
@@ -0,0 +1,355 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Runs a blocking call, and sends it a second time if it is slow to get a response, keeping the first response which arrives, see
+ * {@link HedgingPolicy}.
+ * <p>
+ * <p>
+ * The primary call is executed on the calling thread, so that it is not subject to the limits of the OkHttp dispatcher; only the hedged call is
+ * enqueued. The hedging delay starts once the primary request has actually been sent, see {@link SentRequestInterceptor}, so that the time spent
+ * waiting for a connection is not mistaken for the latency of the server. The exchange fails only when all its calls have failed, with the
+ * exception of the primary call.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+final class HedgedExchange
+{
+
+  /**
+   * A network interceptor which notifies the exchange of a request, if any, that its primary call is being sent on a connection.
+   */
+  static final class SentRequestInterceptor
+      implements Interceptor
+  {
+
+    @Override
+    public Response intercept(Chain chain)
+        throws IOException
+    {
+      final HedgedExchange exchange = chain.request().tag(HedgedExchange.class);
+
+      if (exchange != null)
+      {
+        exchange.onRequestSent(chain.call());
+      }
+
+      return chain.proceed(chain.request());
+    }
+
+  }
+
+  private static final class TimerHolder
+  {
+
+    private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, "HedgedExchange-timer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  }
+
+  private final OkHttpClient httpClient;
+
+  private final HedgingPolicy hedgingPolicy;
+
+  private final CountDownLatch hedgedCallLatch = new CountDownLatch(1);
+
+  private Request request;
+
+  private Call primaryCall;
+
+  private Call hedgedCall;
+
+  private ScheduledFuture<?> hedgingTimer;
+
+  private long sentTimestamp;
+
+  private boolean over;
+
+  private boolean primaryCallCanceledByExchange;
+
+  private Response hedgedResponse;
+
+  HedgedExchange(OkHttpClient httpClient, HedgingPolicy hedgingPolicy)
+  {
+    this.httpClient = httpClient;
+    this.hedgingPolicy = hedgingPolicy;
+  }
+
+  /**
+   * Executes the given request, possibly twice.
+   *
+   * @return the first response which has arrived
+   * @throws IOException if all the calls have failed, in which case the exception of the primary call is thrown, or if the thread has been
+   *                     interrupted while waiting for the hedged call
+   */
+  Response execute(Request request)
+      throws IOException
+  {
+    final Call call;
+
+    synchronized (this)
+    {
+      this.request = request.newBuilder().tag(HedgedExchange.class, this).build();
+      primaryCall = call = httpClient.newCall(this.request);
+    }
+
+    hedgingPolicy.onRequest();
+    Response response = null;
+    IOException exception = null;
+
+    try
+    {
+      response = call.execute();
+    }
+    catch (IOException ioException)
+    {
+      exception = ioException;
+    }
+
+    final Call callToCancel;
+
+    synchronized (this)
+    {
+      if (hedgingTimer != null)
+      {
+        hedgingTimer.cancel(false);
+      }
+
+      if (response != null && over == false)
+      {
+        // The primary call wins
+        over = true;
+        onLatency();
+        callToCancel = hedgedCall;
+      }
+      else if (hedgedResponse != null || hedgedCall == null)
+      {
+        over = true;
+        callToCancel = null;
+      }
+      else
+      {
+        // The primary call has failed while the hedged one is still running
+        callToCancel = null;
+      }
+    }
+
+    if (callToCancel != null)
+    {
+      callToCancel.cancel();
+    }
+
+    if (response != null && hedgedResponse != null && response != hedgedResponse)
+    {
+      // The hedged call has won while the response of the primary call was being received
+      response.close();
+    }
+
+    synchronized (this)
+    {
+      if (over == true)
+      {
+        if (hedgedResponse != null)
+        {
+          return hedgedResponse;
+        }
+
+        if (response != null)
+        {
+          return response;
+        }
+
+        throw exception;
+      }
+    }
+
+    return awaitHedgedCall(exception);
+  }
+
+  /**
+   * @return {@code true} if the primary call has been cancelled from outside the exchange, typically through its {@link CallGroup}
+   */
+  synchronized boolean isCanceled()
+  {
+    return primaryCall != null && primaryCall.isCanceled() == true && primaryCallCanceledByExchange == false;
+  }
+
+  private Response awaitHedgedCall(IOException primaryException)
+      throws IOException
+  {
+    try
+    {
+      hedgedCallLatch.await();
+    }
+    catch (InterruptedException interruptedException)
+    {
+      final Call callToCancel;
+
+      synchronized (this)
+      {
+        over = true;
+        callToCancel = hedgedCall;
+      }
+
+      callToCancel.cancel();
+
+      if (hedgedResponse != null)
+      {
+        hedgedResponse.close();
+      }
+
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the HTTP response");
+    }
+
+    synchronized (this)
+    {
+      over = true;
+
+      if (hedgedResponse != null)
+      {
+        return hedgedResponse;
+      }
+    }
+
+    throw primaryException;
+  }
+
+  private void onRequestSent(Call call)
+  {
+    synchronized (this)
+    {
+      // Only the first network request of the primary call arms the timer, not its follow-ups nor the hedged call
+      if (call != primaryCall || sentTimestamp > 0 || over == true)
+      {
+        return;
+      }
+
+      sentTimestamp = System.currentTimeMillis();
+      hedgingTimer = TimerHolder.INSTANCE.schedule(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          hedge();
+        }
+      }, hedgingPolicy.getHedgingDelayInMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void hedge()
+  {
+    final Call call;
+
+    synchronized (this)
+    {
+      if (over == true || hedgedCall != null || hedgingPolicy.tryHedge() == false)
+      {
+        return;
+      }
+
+      hedgedCall = call = httpClient.newCall(request);
+    }
+
+    call.enqueue(new Callback()
+    {
+      @Override
+      public void onResponse(Call call, Response response)
+      {
+        final Call callToCancel;
+
+        synchronized (HedgedExchange.this)
+        {
+          if (over == true)
+          {
+            callToCancel = null;
+          }
+          else
+          {
+            over = true;
+            hedgedResponse = response;
+            primaryCallCanceledByExchange = true;
+            onLatency();
+            callToCancel = primaryCall;
+          }
+        }
+
+        if (callToCancel == null)
+        {
+          response.close();
+        }
+        else
+        {
+          callToCancel.cancel();
+        }
+
+        hedgedCallLatch.countDown();
+      }
+
+      @Override
+      public void onFailure(Call call, IOException exception)
+      {
+        hedgedCallLatch.countDown();
+      }
+    });
+  }
+
+  /**
+   * Measures the latency of the primary call, up to the first response.
+   */
+  private void onLatency()
+  {
+    if (sentTimestamp > 0)
+    {
+      hedgingPolicy.onResponse(System.currentTimeMillis() - sentTimestamp);
+    }
+  }
+
+}
@@ -0,0 +1,201 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a GET or HEAD request which is slow to get a response should be sent a second time, see
+ * {@link OkHttpClientWebServiceCaller#getHedgingPolicy()}. The first response wins, and the other request is cancelled.
+ * <p>
+ * <p>
+ * The second request is sent either after a fixed delay, or after the 95th percentile of the latency of the latest requests. In order to bound
+ * the additional load put on the servers, each request earns the right to hedge a fraction of a request, and a request is only hedged if enough
+ * of those fractions have been earned.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public class HedgingPolicy
+{
+
+  public static final double DEFAULT_MAXIMUM_HEDGED_RATIO = 0.05;
+
+  /**
+   * The delay used until enough latencies have been measured to compute their 95th percentile.
+   */
+  public static final long DEFAULT_INITIAL_DELAY_IN_MILLISECONDS = 1000;
+
+  /**
+   * The number of latest latencies the 95th percentile is computed on.
+   */
+  private static final int LATENCY_SAMPLES_COUNT = 200;
+
+  /**
+   * The number of new latencies after which the 95th percentile is computed again, which is also the minimum number of latencies it is computed
+   * on.
+   */
+  private static final int PERCENTILE_REFRESH_SAMPLES_COUNT = 20;
+
+  /**
+   * The hedging budget is stored in thousandths of request, so that it can be updated atomically.
+   */
+  private static final long TOKEN_UNIT = 1000;
+
+  /**
+   * The maximum number of requests which may be hedged in a row, once the budget is full.
+   */
+  private static final long MAXIMUM_HEDGING_BURST = 10;
+
+  /**
+   * The delay before hedging a request, or a negative value if the 95th percentile of the latency is used instead.
+   */
+  public final long delayInMilliseconds;
+
+  /**
+   * The maximum ratio of the requests which are hedged.
+   */
+  public final double maximumHedgedRatio;
+
+  private final AtomicLong hedgingBudget = new AtomicLong();
+
+  private final long[] latencies = new long[HedgingPolicy.LATENCY_SAMPLES_COUNT];
+
+  private int latenciesCount;
+
+  private int latencyIndex;
+
+  private int newLatenciesCount;
+
+  private volatile long percentileLatencyInMilliseconds = -1;
+
+  /**
+   * Creates a policy which hedges the requests after the 95th percentile of the latency of the latest requests.
+   */
+  public HedgingPolicy()
+  {
+    this(-1, HedgingPolicy.DEFAULT_MAXIMUM_HEDGED_RATIO);
+  }
+
+  /**
+   * @param delayInMilliseconds the delay before hedging a request, or a negative value if the 95th percentile of the latency of the latest requests
+   *                            should be used instead
+   * @param maximumHedgedRatio  the maximum ratio of the requests which are hedged, between 0 and 1
+   */
+  public HedgingPolicy(long delayInMilliseconds, double maximumHedgedRatio)
+  {
+    this.delayInMilliseconds = delayInMilliseconds;
+    this.maximumHedgedRatio = maximumHedgedRatio;
+  }
+
+  /**
+   * @return the delay in milliseconds after which a request which has not received any response yet should be hedged
+   */
+  public long getHedgingDelayInMilliseconds()
+  {
+    if (delayInMilliseconds >= 0)
+    {
+      return delayInMilliseconds;
+    }
+
+    final long percentileLatencyInMilliseconds = this.percentileLatencyInMilliseconds;
+    return percentileLatencyInMilliseconds >= 0 ? percentileLatencyInMilliseconds : HedgingPolicy.DEFAULT_INITIAL_DELAY_IN_MILLISECONDS;
+  }
+
+  /**
+   * Invoked every time a request which may be hedged is about to be sent.
+   */
+  void onRequest()
+  {
+    final long maximumTokens = HedgingPolicy.MAXIMUM_HEDGING_BURST * HedgingPolicy.TOKEN_UNIT;
+    final long earnedTokens = (long) (maximumHedgedRatio * HedgingPolicy.TOKEN_UNIT);
+
+    while (true)
+    {
+      final long tokens = hedgingBudget.get();
+
+      if (tokens >= maximumTokens || hedgingBudget.compareAndSet(tokens, Math.min(maximumTokens, tokens + earnedTokens)) == true)
+      {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return {@code true} if the hedging budget allows to hedge a request, in which case it has been spent
+   */
+  boolean tryHedge()
+  {
+    while (true)
+    {
+      final long tokens = hedgingBudget.get();
+
+      if (tokens < HedgingPolicy.TOKEN_UNIT)
+      {
+        return false;
+      }
+
+      if (hedgingBudget.compareAndSet(tokens, tokens - HedgingPolicy.TOKEN_UNIT) == true)
+      {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Invoked every time a request which may be hedged has received a response.
+   *
+   * @param latencyInMilliseconds the time it took to receive the response headers, from the moment the request was sent
+   */
+  void onResponse(long latencyInMilliseconds)
+  {
+    if (delayInMilliseconds >= 0)
+    {
+      return;
+    }
+
+    final long[] sortedLatencies;
+
+    synchronized (latencies)
+    {
+      latencies[latencyIndex] = latencyInMilliseconds;
+      latencyIndex = (latencyIndex + 1) % latencies.length;
+      latenciesCount = Math.min(latenciesCount + 1, latencies.length);
+
+      if (++newLatenciesCount < HedgingPolicy.PERCENTILE_REFRESH_SAMPLES_COUNT)
+      {
+        return;
+      }
+
+      newLatenciesCount = 0;
+      sortedLatencies = Arrays.copyOf(latencies, latenciesCount);
+    }
+
+    // The latencies are sorted outside of the lock, and only once in a while
+    Arrays.sort(sortedLatencies);
+    percentileLatencyInMilliseconds = sortedLatencies[(int) Math.ceil(0.95 * sortedLatencies.length) - 1];
+  }
+
+}
@@ -0,0 +1,219 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.smartnsoft.droid4me.log.Logger;
+import com.smartnsoft.droid4me.log.LoggerFactory;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+import com.smartnsoft.droid4me.ws.WebServiceClient.HttpResponse;
+
+import okhttp3.Call;
+
+/**
+ * The pending result of a request run through the
+ * {@link OkHttpClientWebServiceCaller#runRequestAsync(String, com.smartnsoft.droid4me.ws.WebServiceClient.CallType, java.util.Map, java.util.Map, String, java.util.List, OkHttpClientWebServiceCaller.HttpResponseCallback)}
+ * method.
+ * <p>
+ * <p>
+ * When the request fails, the {@link ExecutionException#getCause() cause} of the exception thrown by the {@code get()} methods is a
+ * {@link CallException}. Cancelling the future cancels the underlying HTTP call.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public final class HttpResponseFuture
+    implements Future<HttpResponse>
+{
+
+  private static final Logger log = LoggerFactory.getInstance(HttpResponseFuture.class);
+
+  private final String uri;
+
+  private final OkHttpClientWebServiceCaller.HttpResponseCallback callback;
+
+  private final CountDownLatch latch = new CountDownLatch(1);
+
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  private volatile Call call;
+
+  private volatile boolean cancelled;
+
+  private volatile HttpResponse httpResponse;
+
+  private volatile CallException exception;
+
+  HttpResponseFuture(String uri, OkHttpClientWebServiceCaller.HttpResponseCallback callback)
+  {
+    this.uri = uri;
+    this.callback = callback;
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning)
+  {
+    if (done.compareAndSet(false, true) == false)
+    {
+      return false;
+    }
+
+    cancelled = true;
+    final Call currentCall = call;
+
+    if (currentCall != null)
+    {
+      currentCall.cancel();
+    }
+
+    latch.countDown();
+    return true;
+  }
+
+  @Override
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  @Override
+  public boolean isDone()
+  {
+    return latch.getCount() == 0;
+  }
+
+  @Override
+  public HttpResponse get()
+      throws InterruptedException, ExecutionException
+  {
+    latch.await();
+    return getResult();
+  }
+
+  @Override
+  public HttpResponse get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException
+  {
+    if (latch.await(timeout, unit) == false)
+    {
+      throw new TimeoutException("The request to '" + uri + "' is not over after " + timeout + " " + unit);
+    }
+
+    return getResult();
+  }
+
+  /**
+   * Remembers the HTTP call currently run, so that it can be cancelled. Each attempt of the request runs a new call.
+   */
+  void setCall(Call call)
+  {
+    this.call = call;
+
+    if (cancelled == true)
+    {
+      call.cancel();
+    }
+  }
+
+  /**
+   * @return {@code false} if the future was already over, in which case the provided response has not been taken into account
+   */
+  boolean complete(HttpResponse httpResponse)
+  {
+    if (done.compareAndSet(false, true) == false)
+    {
+      return false;
+    }
+
+    this.httpResponse = httpResponse;
+    latch.countDown();
+
+    if (callback != null)
+    {
+      try
+      {
+        callback.onResponse(uri, httpResponse);
+      }
+      catch (RuntimeException runtimeException)
+      {
+        if (log.isErrorEnabled() == true)
+        {
+          log.error("The callback of the request to '" + uri + "' failed while handling its response", runtimeException);
+        }
+      }
+    }
+
+    return true;
+  }
+
+  void fail(CallException exception)
+  {
+    if (done.compareAndSet(false, true) == false)
+    {
+      return;
+    }
+
+    this.exception = exception;
+    latch.countDown();
+
+    if (callback != null)
+    {
+      try
+      {
+        callback.onFailure(uri, exception);
+      }
+      catch (RuntimeException runtimeException)
+      {
+        if (log.isErrorEnabled() == true)
+        {
+          log.error("The callback of the request to '" + uri + "' failed while handling its failure", runtimeException);
+        }
+      }
+    }
+  }
+
+  private HttpResponse getResult()
+      throws ExecutionException
+  {
+    if (cancelled == true)
+    {
+      throw new CancellationException("The request to '" + uri + "' has been cancelled");
+    }
+
+    if (exception != null)
+    {
+      throw new ExecutionException(exception);
+    }
+
+    return httpResponse;
+  }
+
+}
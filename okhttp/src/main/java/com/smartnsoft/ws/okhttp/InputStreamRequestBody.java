@@ -0,0 +1,198 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * A {@link RequestBody} which streams an {@link InputStream} into the request instead of copying it first into memory.
+ * <p>
+ * <p>
+ * When the input stream is a {@link FileInputStream}, the file content is transferred through its {@link FileChannel}, and the body may be
+ * written several times (when the request is retried, for instance). Since the target of the transfer is the Okio sink, the bytes still go
+ * through its heap segments: what is saved is the byte-by-byte copy, not the copy itself. The same goes for the in-memory input streams, which are reset before each
+ * write. Any other input stream is not buffered, hence can only be written once: see {@link #isRepeatable()}.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public final class InputStreamRequestBody
+    extends RequestBody
+{
+
+  private final MediaType contentType;
+
+  private final InputStream inputStream;
+
+  private final FileChannel fileChannel;
+
+  private final long position;
+
+  private final long contentLength;
+
+  private final boolean repeatable;
+
+  private boolean written;
+
+  /**
+   * Indicates whether the given body may be written several times, which is the case of all the bodies but the non-repeatable
+   * {@link InputStreamRequestBody} instances, possibly wrapped into a multipart or a gzipped body.
+   *
+   * @param body the body of a request, which may be {@code null}
+   * @return {@code true} if the request may be sent again
+   */
+  public static boolean isRepeatable(RequestBody body)
+  {
+    if (body instanceof InputStreamRequestBody)
+    {
+      return ((InputStreamRequestBody) body).isRepeatable();
+    }
+
+    if (body instanceof GzipRequestBody)
+    {
+      return InputStreamRequestBody.isRepeatable(((GzipRequestBody) body).getBody());
+    }
+
+    if (body instanceof MultipartBody)
+    {
+      for (final MultipartBody.Part part : ((MultipartBody) body).parts())
+      {
+        if (InputStreamRequestBody.isRepeatable(part.body()) == false)
+        {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  public InputStreamRequestBody(MediaType contentType, InputStream inputStream)
+      throws IOException
+  {
+    this.contentType = contentType;
+    this.inputStream = inputStream;
+
+    if (inputStream instanceof FileInputStream)
+    {
+      fileChannel = ((FileInputStream) inputStream).getChannel();
+      position = fileChannel.position();
+      contentLength = fileChannel.size() - position;
+      repeatable = true;
+    }
+    else
+    {
+      fileChannel = null;
+      position = 0;
+      // Those streams hold their whole content in memory already, so that marking them does not buffer anything
+      repeatable = inputStream instanceof ByteArrayInputStream || inputStream instanceof ByteBufferInputStream;
+
+      if (repeatable == true)
+      {
+        inputStream.mark(inputStream.available());
+      }
+
+      // Only a ByteArrayInputStream is known to report its remaining bytes exactly
+      contentLength = inputStream instanceof ByteArrayInputStream ? inputStream.available() : -1;
+    }
+  }
+
+  /**
+   * @return {@code true} if the body may be written several times; when it is not, a request holding it is never retried
+   */
+  public boolean isRepeatable()
+  {
+    return repeatable;
+  }
+
+  @Override
+  public MediaType contentType()
+  {
+    return contentType;
+  }
+
+  @Override
+  public long contentLength()
+  {
+    return contentLength;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink)
+      throws IOException
+  {
+    if (fileChannel != null)
+    {
+      long transferred = 0;
+
+      // The sink is not a file or a socket channel, hence the transfer is not zero-copy: it fills the segments of the sink by chunks
+      while (transferred < contentLength)
+      {
+        final long count = fileChannel.transferTo(position + transferred, contentLength - transferred, sink);
+
+        if (count <= 0)
+        {
+          throw new IOException("The file has been truncated while being sent");
+        }
+
+        transferred += count;
+      }
+    }
+    else
+    {
+      if (repeatable == true)
+      {
+        inputStream.reset();
+      }
+      else
+      {
+        synchronized (this)
+        {
+          if (written == true)
+          {
+            // Sending the rest of a partially consumed stream would silently corrupt the request
+            throw new IOException("The body cannot be sent twice, since its input stream cannot be reset");
+          }
+
+          written = true;
+        }
+      }
+
+      // We do not close the source, because the input stream belongs to the caller
+      final Source source = Okio.source(inputStream);
+      sink.writeAll(source);
+    }
+  }
+
+}
@@ -22,15 +22,21 @@
 
 package com.smartnsoft.ws.okhttp;
 
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import com.smartnsoft.droid4me.ext.json.jackson.JacksonParser;
 import com.smartnsoft.droid4me.ext.json.jackson.ObjectMapperComputer;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import okhttp3.OkHttpClient;
+import okhttp3.Response;
 
 /**
  * @author Ludovic Roland
@@ -43,6 +49,9 @@ public abstract class JacksonOkHttpClientWebServiceCaller
 
   public final JacksonParser jacksonParser;
 
+  // The readers are immutable and thread-safe, hence they can be shared between calls
+  private final ConcurrentMap<Type, ObjectReader> objectReaders = new ConcurrentHashMap<>();
+
   protected JacksonOkHttpClientWebServiceCaller(int readTimeOutInMilliseconds, int connectTimeOutInMilliseconds,
       boolean acceptGzip)
   {
@@ -50,6 +59,41 @@ public abstract class JacksonOkHttpClientWebServiceCaller
     this.jacksonParser = new JacksonParser(this);
   }
 
+  /**
+   * Performs an HTTP GET request and deserializes its JSON body into the provided type.
+   * <p>
+   * <p>
+   * Contrary to the {@link #runRequest(String)} method followed by a {@link JacksonParser#deserializeJson(java.io.InputStream, Class)} call,
+   * the body is parsed while it is read from the connection, without being copied into memory first.
+   * </p>
+   *
+   * @param uri       the URI being requested
+   * @param valueType the type of the object to deserialize
+   * @return the deserialized object
+   * @throws CallException if the call failed, see {@link #runRequest(String, CallType, java.util.Map, java.util.Map, String, java.util.List)}, or
+   *                       if the body could not be deserialized
+   */
+  public <T> T runRequest(String uri, Class<T> valueType)
+      throws CallException
+  {
+    return runRequestAndDeserialize(uri, valueType);
+  }
+
+  /**
+   * Same as {@link #runRequest(String, Class)}, but for a generic type.
+   *
+   * @param uri           the URI being requested
+   * @param typeReference the type of the object to deserialize
+   * @return the deserialized object
+   * @throws CallException if the call failed or if the body could not be deserialized
+   * @see #runRequest(String, Class)
+   */
+  public <T> T runRequest(String uri, TypeReference<T> typeReference)
+      throws CallException
+  {
+    return runRequestAndDeserialize(uri, typeReference.getType());
+  }
+
   @Override
   public ObjectMapper computeObjectMapper()
   {
@@ -71,4 +115,46 @@ public abstract class JacksonOkHttpClientWebServiceCaller
     return builder;
   }
 
+  private <T> T runRequestAndDeserialize(String uri, Type type)
+      throws CallException
+  {
+    Response response = null;
+
+    try
+    {
+      response = performHttpRequest(uri, CallType.Get, null, null, null, null);
+
+      return getObjectReader(type).readValue(response.body().byteStream());
+    }
+    catch (CallException exception)
+    {
+      throw exception;
+    }
+    catch (Exception exception)
+    {
+      throw new CallException(exception);
+    }
+    finally
+    {
+      if (response != null)
+      {
+        response.close();
+      }
+    }
+  }
+
+  private ObjectReader getObjectReader(Type type)
+  {
+    ObjectReader objectReader = objectReaders.get(type);
+
+    if (objectReader == null)
+    {
+      final ObjectMapper objectMapper = jacksonParser.objectMapper;
+      objectReader = objectMapper.readerFor(objectMapper.getTypeFactory().constructType(type));
+      objectReaders.putIfAbsent(type, objectReader);
+    }
+
+    return objectReader;
+  }
+
 }
@@ -24,14 +24,31 @@ package com.smartnsoft.ws.okhttp;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
@@ -41,17 +58,27 @@ import com.smartnsoft.droid4me.log.Logger;
 import com.smartnsoft.droid4me.log.LoggerFactory;
 import com.smartnsoft.droid4me.ws.WebServiceCaller;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
 import okhttp3.FormBody;
 import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okhttp3.internal.Util;
 import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Sink;
+import okio.Source;
 
 /**
  * @author Ludovic Roland
@@ -66,15 +93,205 @@ public abstract class OkHttpClientWebServiceCaller
     FormBody, MultipartBody, JsonBody
   }
 
+  /**
+   * Gets notified of the progress of a {@link #download(String, Map, File, DownloadListener) download}.
+   */
+  public interface DownloadListener
+  {
+
+    /**
+     * Invoked every time a chunk of the body has been written to the target file.
+     *
+     * @param uri             the URI being downloaded
+     * @param downloadedBytes the number of bytes already written to the target file, including the ones written by a previous interrupted download
+     * @param totalBytes      the total size of the downloaded content, or {@code -1} if it is unknown
+     */
+    void onProgress(String uri, long downloadedBytes, long totalBytes);
+
+  }
+
+  /**
+   * Gets notified of the outcome of a {@link #runRequestAsync(String, CallType, Map, Map, String, List, HttpResponseCallback) request run
+   * asynchronously}. The methods are invoked from a thread of the {@link Dispatcher}, hence they should not block.
+   */
+  public interface HttpResponseCallback
+  {
+
+    /**
+     * Invoked when the request has succeeded.
+     *
+     * @param uri          the URI which has been requested
+     * @param httpResponse the response, as {@link #runRequest(String, CallType, Map, Map, String, List)} would have returned it
+     */
+    void onResponse(String uri, HttpResponse httpResponse);
+
+    /**
+     * Invoked when the request has failed. It is not invoked when the request has been cancelled through its {@link HttpResponseFuture}.
+     *
+     * @param uri       the URI which has been requested
+     * @param exception the exception {@link #runRequest(String, CallType, Map, Map, String, List)} would have thrown
+     */
+    void onFailure(String uri, CallException exception);
+
+  }
+
+  /**
+   * The suffix of the file, stored next to the target of a download, which remembers that the download is not complete yet, along with the
+   * validator of the downloaded content.
+   */
+  public static final String PARTIAL_DOWNLOAD_FILE_SUFFIX = ".partial";
+
+  private static final long DOWNLOAD_CHUNK_SIZE_IN_BYTES = 64 * 1024;
+
+  private static final String SPILL_FILE_PREFIX = "okhttp-response";
+
+  private static final List<ContentDecoder> DEFAULT_CONTENT_DECODERS = Collections.unmodifiableList(Arrays.asList(ContentDecoder.GZIP, ContentDecoder.DEFLATE, ContentDecoder.BROTLI));
+
+  /**
+   * The root client all the {@link #computeHttpClient()} clients are derived from, so that they share the same connection pool and dispatcher.
+   * The holder class makes its lazy creation thread-safe without any lock. The executor service of the dispatcher cannot be shut down, since it
+   * belongs to all the instances.
+   */
+  private static final class SharedHttpClientHolder
+  {
+
+    private static final OkHttpClient INSTANCE = new OkHttpClient.Builder().dispatcher(new Dispatcher(new SharedExecutorService(new Dispatcher().executorService()))).build();
+
+  }
+
+  /**
+   * The root client of the instances which {@link #isUsingVirtualThreads() use virtual threads}: it shares the connection pool of the
+   * {@link SharedHttpClientHolder} root client, but has its own dispatcher.
+   */
+  private static final class VirtualThreadsHttpClientHolder
+  {
+
+    private static final OkHttpClient INSTANCE = SharedHttpClientHolder.INSTANCE.newBuilder().dispatcher(new Dispatcher(new SharedExecutorService(VirtualThreads.newDispatcher().executorService()))).build();
+
+  }
+
+  /**
+   * Schedules the retries of the asynchronous requests, see {@link #getRetryPolicy()}. Its single daemon thread only enqueues the requests again.
+   */
+  private static final class RetrySchedulerHolder
+  {
+
+    private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        final Thread thread = new Thread(runnable, "OkHttpClientWebServiceCaller retries");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+  }
+
+  /**
+   * Tags the request which resumes a partial download, so that its {@code 416} response is handed back to the
+   * {@link #download(String, Map, File, DownloadListener)} method instead of being considered as a failure.
+   */
+  private static final class ResumedDownload
+  {
+
+    static final ResumedDownload INSTANCE = new ResumedDownload();
+
+  }
+
+  /**
+   * A request being run on behalf of all the identical requests issued meanwhile, see {@link #isCoalescingRequest(String, CallType, Map)}.
+   */
+  private static final class InFlightRequest
+  {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private Map<String, List<String>> headers;
+
+    private int statusCode;
+
+    /**
+     * The buffered body, in memory or in a memory-mapped file, which is never read directly, only through its duplicates.
+     */
+    private ByteBuffer content;
+
+    private CallException exception;
+
+    void complete(Map<String, List<String>> headers, int statusCode, ByteBuffer content)
+    {
+      this.headers = headers;
+      this.statusCode = statusCode;
+      this.content = content;
+      latch.countDown();
+    }
+
+    void fail(CallException exception)
+    {
+      this.exception = exception;
+      latch.countDown();
+    }
+
+    /**
+     * @param deadline the deadline of the waiting caller, if any, which bounds the wait
+     */
+    HttpResponse await(Deadline deadline)
+        throws CallException
+    {
+      try
+      {
+        if (deadline == null)
+        {
+          latch.await();
+        }
+        else if (latch.await(deadline.getRemainingInMilliseconds(), TimeUnit.MILLISECONDS) == false)
+        {
+          throw new CallException(new Deadline.DeadlineExceededException());
+        }
+      }
+      catch (InterruptedException exception)
+      {
+        Thread.currentThread().interrupt();
+        throw new CallException(exception);
+      }
+
+      if (exception != null)
+      {
+        // The exception is shared by all the coalesced callers, so that they get the same status code
+        throw exception;
+      }
+
+      return newHttpResponse();
+    }
+
+    HttpResponse newHttpResponse()
+    {
+      // Each caller gets its own stream over the same immutable content
+      final InputStream inputStream = content == null ? null : new ByteBufferInputStream(content.duplicate());
+      return new HttpResponse(headers, statusCode, inputStream, inputStream);
+    }
+
+  }
+
   protected final static Logger log = LoggerFactory.getInstance(OkHttpClientWebServiceCaller.class);
 
+  /**
+   * Remembers, for each class, whether it is annotated with {@link ReuseOkHttpClient}.
+   */
+  private static final ConcurrentMap<Class<?>, Boolean> reuseHttpClientClasses = new ConcurrentHashMap<>();
+
   private final int readTimeOutInMilliseconds;
 
   private final int connectTimeOutInMilliseconds;
 
   private final boolean acceptGzip;
 
-  private OkHttpClient httpClient;
+  private final boolean reuseHttpClient;
+
+  private final AtomicReference<OkHttpClient> httpClient = new AtomicReference<>();
+
+  private final ConcurrentMap<List<Object>, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
 
   protected OkHttpClientWebServiceCaller(int readTimeOutInMilliseconds, int connectTimeOutInMilliseconds,
       boolean acceptGzip)
@@ -82,6 +299,20 @@ public abstract class OkHttpClientWebServiceCaller
     this.readTimeOutInMilliseconds = readTimeOutInMilliseconds;
     this.connectTimeOutInMilliseconds = connectTimeOutInMilliseconds;
     this.acceptGzip = acceptGzip;
+    this.reuseHttpClient = isReuseHttpClient(getClass());
+  }
+
+  private static boolean isReuseHttpClient(Class<?> theClass)
+  {
+    Boolean reuseHttpClient = reuseHttpClientClasses.get(theClass);
+
+    if (reuseHttpClient == null)
+    {
+      reuseHttpClient = theClass.getAnnotation(ReuseOkHttpClient.class) != null;
+      reuseHttpClientClasses.putIfAbsent(theClass, reuseHttpClient);
+    }
+
+    return reuseHttpClient;
   }
 
   /**
@@ -121,7 +352,8 @@ public abstract class OkHttpClientWebServiceCaller
    *                   request
    * @param files      if the HTTP method is set to {@link CallType#Post} or {@link CallType#Put}, this is the file data of the
    *                   request
-   * @return the input stream of the HTTP method call; cannot be {@code null}
+   * @return the input stream of the HTTP method call; cannot be {@code null}. When the response is streamed (see
+   * {@link #isStreamingResponse(String, CallType, Map)}), the caller is responsible for closing the {@link HttpResponse#inputStream}
    * @throws CallException if the status code of the HTTP response does not belong to the [{@link HttpURLConnection#HTTP_OK}, {@link HttpURLConnection#HTTP_MULT_CHOICE}] range.
    *                       Also if a connection issue occurred: the exception will {@link Throwable#getCause() embed} the cause of the exception. If the
    *                       {@link #isConnected()} method returns {@code false}, no request will be attempted and a {@link CallException}
@@ -134,31 +366,251 @@ public abstract class OkHttpClientWebServiceCaller
       Map<String, String> parameters, String body, List<MultipartFile> files)
       throws CallException
   {
+    final boolean streamResponse = isStreamingResponse(uri, callType, headers);
+
+    if (streamResponse == false && (callType.verb == Verb.Get || callType.verb == Verb.Head) && isCoalescingRequest(uri, callType, headers) == true)
+    {
+      return runCoalescedRequest(uri, callType, headers);
+    }
+
+    try
+    {
+      return computeHttpResponse(uri, callType, streamResponse, performHttpRequest(uri, callType, headers, parameters, body, files));
+    }
+    catch (CallException exception)
+    {
+      throw exception;
+    }
+    catch (Exception exception)
+    {
+      throw new CallException(exception);
+    }
+  }
+
+  /**
+   * Equivalent to calling {@link #runRequestAsync(String, CallType, Map, Map, String, List, HttpResponseCallback)} with {@code callType} parameter
+   * set to {@code CallType.Get} and {@code headers}, {@code parameters}, {@code body} and {@code files} parameters set to {@code null}.
+   *
+   * @see #runRequestAsync(String, CallType, Map, Map, String, List, HttpResponseCallback)
+   */
+  public final HttpResponseFuture runRequestAsync(String uri, HttpResponseCallback callback)
+  {
+    return runRequestAsync(uri, CallType.Get, null, null, null, null, callback);
+  }
+
+  /**
+   * Performs asynchronously an HTTP request corresponding to the provided parameters: the method returns immediately, and the request is run
+   * through the {@link Dispatcher} of the {@link #getHttpClient() HTTP client}, which does not hold a thread while waiting for the server.
+   * <p>
+   * <p>
+   * The request undergoes the same processing as with the {@link #runRequest(String, CallType, Map, Map, String, List)} method: in particular,
+   * the {@link #onStatusCodeNotOk(String, CallType, Request, Map, Response, int)} method is invoked from a dispatcher thread and the request is
+   * enqueued again if it returns {@code true}, and the returned future fails right away if the {@link #isConnected()} method returns
+   * {@code false}.
+   * </p>
+   *
+   * @param callback notified from a dispatcher thread once the request is over; may be {@code null}
+   * @return the pending result of the request; cancelling it cancels the underlying HTTP call. When the future fails, the {@link
+   * java.util.concurrent.ExecutionException#getCause() cause} of the exception is the {@link CallException} which
+   * {@link #runRequest(String, CallType, Map, Map, String, List)} would have thrown
+   * @see #runRequest(String, CallType, Map, Map, String, List)
+   */
+  public HttpResponseFuture runRequestAsync(String uri, CallType callType, Map<String, String> headers,
+      Map<String, String> parameters, String body, List<MultipartFile> files, HttpResponseCallback callback)
+  {
+    final HttpResponseFuture future = new HttpResponseFuture(uri, callback);
+
+    try
+    {
+      final boolean streamResponse = isStreamingResponse(uri, callType, headers);
+      final Request.Builder requestBuilder = computeRequestBuilder(uri, callType, headers, parameters, body, files);
+      enqueueHttpRequest(future, uri, callType, headers, streamResponse, requestBuilder, 0);
+    }
+    catch (CallException exception)
+    {
+      future.fail(exception);
+    }
+    catch (Exception exception)
+    {
+      future.fail(new CallException(exception));
+    }
+
+    return future;
+  }
+
+  /**
+   * Equivalent to calling {@link #runRequests(List, int, int)} with the {@link Dispatcher#getMaxRequests()} and
+   * {@link Dispatcher#getMaxRequestsPerHost()} limits of the {@link #getHttpClient() HTTP client} dispatcher.
+   *
+   * @see #runRequests(List, int, int)
+   */
+  public final List<RequestResult> runRequests(List<RequestSpec> requestSpecs)
+      throws CallException
+  {
+    final Dispatcher dispatcher = getHttpClient().dispatcher();
+    return runRequests(requestSpecs, dispatcher.getMaxRequests(), dispatcher.getMaxRequestsPerHost());
+  }
+
+  /**
+   * Runs a batch of independent requests concurrently, and waits for all of them to be over.
+   * <p>
+   * <p>
+   * The requests are run through the {@link #runRequestAsync(String, CallType, Map, Map, String, List, HttpResponseCallback)} method, hence on the
+   * threads of the {@link Dispatcher} of the {@link #getHttpClient() HTTP client}, which also applies its own limits. They are started by
+   * order of submission, as long as the provided limits are not reached. A failing request does not prevent the other ones from running. This
+   * method must not be invoked from a dispatcher thread.
+   * </p>
+   *
+   * @param requestSpecs           the requests to run
+   * @param maximumRequests        the maximum number of requests of the batch run at the same time
+   * @param maximumRequestsPerHost the maximum number of requests of the batch run at the same time against the same host
+   * @return the outcome of each request, in the order of the provided requests
+   * @throws CallException if the calling thread has been interrupted while waiting, in which case the running requests are cancelled
+   */
+  public List<RequestResult> runRequests(List<RequestSpec> requestSpecs, int maximumRequests,
+      int maximumRequestsPerHost)
+      throws CallException
+  {
+    return new RequestsBatch(this, requestSpecs, maximumRequests, maximumRequestsPerHost).run();
+  }
+
+  /**
+   * Equivalent to calling {@link #download(String, Map, File, DownloadListener)} with {@code headers} and {@code listener} parameters set to
+   * {@code null}.
+   *
+   * @see #download(String, Map, File, DownloadListener)
+   */
+  public final void download(String uri, File target)
+      throws CallException
+  {
+    download(uri, null, target, null);
+  }
+
+  /**
+   * Downloads the body of an HTTP GET request straight into a file, without holding it in memory.
+   * <p>
+   * <p>
+   * If a previous download of the same target has been interrupted, the download is resumed where it stopped through a {@code Range} request. The
+   * {@code If-Range} header, set to the {@code ETag} or the {@code Last-Modified} header of the previous response, guarantees that the content is
+   * downloaded again from the start if it has changed meanwhile. Until the download is complete, a {@link #PARTIAL_DOWNLOAD_FILE_SUFFIX} file is
+   * kept next to the target file.
+   * </p>
+   * <p>
+   * <p>
+   * Since a range applies to the encoded bytes of a body, the body is requested with the {@code identity} encoding and is never decoded, so that
+   * the bytes of the target file are always the bytes of the resource.
+   * </p>
+   *
+   * @param uri      the URI being downloaded
+   * @param headers  the headers of the HTTP request; may be {@code null}
+   * @param target   the file the body is written into
+   * @param listener notified of the download progress; may be {@code null}
+   * @throws CallException if the call failed, see {@link #runRequest(String, CallType, Map, Map, String, List)}, or if the body could not be written
+   *                       into the target file
+   */
+  public void download(String uri, Map<String, String> headers, File target, DownloadListener listener)
+      throws CallException
+  {
+    final File partialFile = new File(target.getPath() + OkHttpClientWebServiceCaller.PARTIAL_DOWNLOAD_FILE_SUFFIX);
     Response response = null;
 
     try
     {
-      response = performHttpRequest(uri, callType, headers, parameters, body, files);
+      final long offset = target.exists() == true && partialFile.exists() == true ? target.length() : 0;
+      final Map<String, String> requestHeaders = headers == null ? new HashMap<String, String>() : new HashMap<>(headers);
+      requestHeaders.put("Accept-Encoding", "identity");
 
-      final Map<String, List<String>> headerFields = new HashMap<>();
-      final Headers responseHeaders = response.headers();
-      for (int index = 0, size = responseHeaders.size(); index < size; index++)
+      if (offset > 0)
       {
-        final String headerName = responseHeaders.name(index);
-        final String headerValue = responseHeaders.value(index);
+        requestHeaders.put("Range", "bytes=" + offset + "-");
+        final String validator = readFile(partialFile);
 
-        if (headerFields.containsKey(headerName) == false)
+        if (TextUtils.isEmpty(validator) == false)
         {
-          headerFields.put(headerName, new ArrayList<String>());
+          requestHeaders.put("If-Range", validator);
         }
+      }
+
+      final Request.Builder requestBuilder = computeRequestBuilder(uri, CallType.Get, requestHeaders, null, null, null);
 
-        headerFields.get(headerName).add(headerValue);
+      if (offset > 0)
+      {
+        requestBuilder.tag(ResumedDownload.class, ResumedDownload.INSTANCE);
       }
 
-      final int statusCode = response.code();
-      final InputStream inputStream = getContent(uri, callType, response.body());
+      // The response is not decoded, see the "Accept-Encoding" header
+      response = performHttpRequest(uri, CallType.Get, requestHeaders, requestBuilder);
 
-      return new HttpResponse(headerFields, statusCode, inputStream, inputStream);
+      if (response.code() == 416)
+      {
+        response.close();
+
+        if (response.header("Content-Range", "").equals("bytes */" + offset) == true)
+        {
+          // The previous download had actually received the whole body, but was interrupted before it could be marked as complete
+          partialFile.delete();
+
+          if (listener != null)
+          {
+            listener.onProgress(uri, offset, offset);
+          }
+
+          return;
+        }
+
+        // The partial file cannot be resumed: we start over
+        partialFile.delete();
+        target.delete();
+        download(uri, headers, target, listener);
+        return;
+      }
+
+      final ResponseBody responseBody = response.body();
+      final boolean resumed = offset > 0 && response.code() == 206 && response.header("Content-Range", "").startsWith("bytes " + offset + "-") == true;
+      final long position = resumed == true ? offset : 0;
+      final long totalBytes = responseBody.contentLength() < 0 ? -1 : position + responseBody.contentLength();
+
+      if (response.code() == 206 && resumed == false)
+      {
+        partialFile.delete();
+        target.delete();
+        throw new IOException("The HTTP response does not match the range of the partially downloaded file '" + target.getPath() + "'");
+      }
+
+      if (resumed == false)
+      {
+        // Only strong validators may be used with the "If-Range" header
+        final String eTag = response.header("ETag");
+        writeFile(partialFile, eTag != null && eTag.startsWith("W/") == false ? eTag : response.header("Last-Modified", ""));
+      }
+
+      final BufferedSource source = responseBody.source();
+      final Sink sink = Okio.sink(new FileOutputStream(target, resumed));
+
+      try
+      {
+        // The bytes go through the pooled okio segments, from the connection to the file
+        final Buffer buffer = new Buffer();
+        long downloadedBytes = position;
+        long count;
+
+        while ((count = source.read(buffer, OkHttpClientWebServiceCaller.DOWNLOAD_CHUNK_SIZE_IN_BYTES)) != -1)
+        {
+          sink.write(buffer, count);
+          downloadedBytes += count;
+
+          if (listener != null)
+          {
+            listener.onProgress(uri, downloadedBytes, totalBytes);
+          }
+        }
+      }
+      finally
+      {
+        sink.close();
+      }
+
+      partialFile.delete();
     }
     catch (CallException exception)
     {
@@ -182,19 +634,22 @@ public abstract class OkHttpClientWebServiceCaller
    * HTTP method will be executed a new {@link OkHttpClient} instance will be created. This will not affect any pending HTTP method execution.
    * <p/>
    * <p>
-   * It is up to the caller to previously {@code client.dispatcher().executorService().shutdown()}, {@code client.connectionPool().evictAll()} or {@code client.cache().close()} the client if necessary.
+   * It is up to the caller to previously {@code client.cache().close()} the client if necessary. Since the clients share the connection pool and
+   * the dispatcher of a common root client by default (see {@link #computeHttpClient()}), invoking {@code client.dispatcher().executorService().shutdown()}
+   * has no effect on them, and {@code client.connectionPool().evictAll()} closes the idle connections of all the instances. Override the
+   * {@link #computeHttpClient()} method with an own connection pool and dispatcher in order to release them for good.
    * </p>
    *
    * @see #getHttpClient()
    */
-  public synchronized final void resetHttpClient()
+  public final void resetHttpClient()
   {
     if (log.isInfoEnabled())
     {
       log.info("Resetting the HTTP client");
     }
 
-    httpClient = null;
+    httpClient.set(null);
   }
 
   public RequestBodyType getBodyType(String uri, CallType callType, Map<String, String> headers,
@@ -204,67 +659,337 @@ public abstract class OkHttpClientWebServiceCaller
   }
 
   /**
-   * Is responsible for returning an HTTP client instance, used for actually running the HTTP requests. The method implementation relies on the
-   * {@link #computeHttpClient()} method, if no {@link OkHttpClient} is currently created.
+   * Indicates whether the body of a request should be gzipped while it is sent, in which case the request holds a {@code Content-Encoding: gzip}
+   * header. Only the {@link RequestBodyType#JsonBody} and {@link RequestBodyType#FormBody} bodies are concerned.
+   * <p>
+   * <p>
+   * Compressing a small body costs more CPU than it saves bandwidth: this is why only bodies larger than the returned threshold are compressed.
+   * The default implementation returns {@code -1}, i.e. no body is compressed. Make sure the server accepts gzipped request bodies before enabling
+   * it.
+   * </p>
    *
-   * @return a valid HTTP client
-   * @throws CallException is the invocation of the {@link #computeHttpClient()} threw an exception
-   * @see #computeHttpClient()
-   * @see #resetHttpClient()
+   * @param uri      the URI being requested
+   * @param callType the HTTP method
+   * @param headers  the headers of the HTTP request
+   * @param bodyType the type of the body, as returned by {@link #getBodyType(String, CallType, Map, Map, String, List)}
+   * @return the size in bytes above which the body is compressed, or a negative value if it should never be compressed
+   * @see GzipRequestBody
    */
-  protected synchronized final OkHttpClient getHttpClient()
-      throws CallException
+  public long getBodyCompressionThreshold(String uri, CallType callType, Map<String, String> headers,
+      RequestBodyType bodyType)
   {
-    final ReuseOkHttpClient reuseHttpClientAnnotation = this.getClass().getAnnotation(ReuseOkHttpClient.class);
-
-    if (reuseHttpClientAnnotation != null)
-    {
-      if (httpClient == null)
-      {
-        try
-        {
-          httpClient = computeHttpClient().build();
-        }
-        catch (Exception exception)
-        {
-          throw new CallException("Cannot instantiate the 'HttpClient'", exception);
-        }
-      }
-      return httpClient;
-    }
-    else
-    {
-      try
-      {
-        return computeHttpClient().build();
-      }
-      catch (Exception exception)
-      {
-        throw new CallException("Cannot instantiate the 'HttpClient'", exception);
-      }
-    }
+    return -1;
   }
 
   /**
-   * This method will be invoked by the {@link #getHttpClient()} method, when it needs to use a new {@link OkHttpClient}. The method should be
-   * overridden, when the {@link OkHttpClient} to use should be customized; a typical case is when the connection time-outs, the HTTP {@code User-Agent}
-   * parameters need to fine-tuned.
-   * <p/>
+   * Indicates whether the body of the HTTP response should be streamed rather than buffered in memory.
    * <p>
-   * In the case the class uses {@link ReuseOkHttpClient} annotation, this method will be invoked only once.
+   * <p>
+   * When streamed, the {@link HttpResponse#inputStream} returned by {@link #runRequest(String, CallType, Map, Map, String, List)} reads directly from
+   * the connection and the caller must close it in order to release the connection. The default implementation returns {@code false}, i.e. the
+   * body is fully read through the {@link #getContent(String, CallType, ResponseBody)} method.
    * </p>
    *
-   * @return an HTTP client that will be used for running HTTP requests
+   * @param uri      the URI being requested
+   * @param callType the HTTP method
+   * @param headers  the headers of the HTTP request
+   * @return {@code true} if the response body should be streamed
+   * @see #getStreamedContent(String, CallType, ResponseBody)
    */
-  protected OkHttpClient.Builder computeHttpClient()
+  public boolean isStreamingResponse(String uri, CallType callType, Map<String, String> headers)
   {
-    return new OkHttpClient.Builder();
+    return false;
   }
 
   /**
-   * Invoked when the result of the HTTP request is not <code>20X</code>. The default implementation logs the problem and throws an exception.
-   *
-   * @param uri           the URI of the HTTP call
+   * Indicates whether a GET or HEAD request run through the {@link #runRequest(String, CallType, Map, Map, String, List)} method should share the
+   * network exchange of an identical request already in flight, instead of sending its own request.
+   * <p>
+   * <p>
+   * Two requests are identical when they have the same HTTP method, the same URI, the same values for the
+   * {@link #getCoalescingHeaderNames() coalescing headers} and the same {@link #getCallGroup(String, CallType, Map) call group}, so that
+   * cancelling a group cancels all the callers sharing its requests, and only them. The response body of a coalesced request is buffered once by the
+   * {@link #getContent(String, CallType, ResponseBody)} method, possibly {@link #getMemoryBufferThresholdInBytes() spilled into a file}, and every
+   * caller gets its own {@link HttpResponse#inputStream} over it. Streamed responses and asynchronous requests are never coalesced. The default
+   * implementation returns {@code false}.
+   * </p>
+   *
+   * @param uri      the URI being requested
+   * @param callType the HTTP method
+   * @param headers  the headers of the HTTP request
+   * @return {@code true} if the request may be coalesced with identical in-flight requests
+   */
+  public boolean isCoalescingRequest(String uri, CallType callType, Map<String, String> headers)
+  {
+    return false;
+  }
+
+  /**
+   * @return the names of the request headers which take part in the identity of a {@link #isCoalescingRequest(String, CallType, Map) coalesced}
+   * request; when {@code null}, which is the default, all the request headers do, so that requests with distinct credentials are never
+   * coalesced
+   */
+  protected List<String> getCoalescingHeaderNames()
+  {
+    return null;
+  }
+
+  /**
+   * Indicates which content encodings are accepted when the instance has been created with the {@code acceptGzip} flag set to {@code true}. In
+   * that case, the encodings of the returned decoders are sent through the {@code Accept-Encoding} header, and the response bodies are
+   * decoded while being read, according to their {@code Content-Encoding} header.
+   * <p>
+   * <p>
+   * The default implementation returns the {@link ContentDecoder#GZIP}, {@link ContentDecoder#DEFLATE} and {@link ContentDecoder#BROTLI}
+   * decoders, by order of preference.
+   * </p>
+   *
+   * @return the decoders of the accepted content encodings
+   */
+  protected List<ContentDecoder> getContentDecoders()
+  {
+    return OkHttpClientWebServiceCaller.DEFAULT_CONTENT_DECODERS;
+  }
+
+  /**
+   * Indicates the maximum size of a response body which is buffered in memory by the {@link #getContent(String, CallType, ResponseBody)} method.
+   * <p>
+   * <p>
+   * A larger body is spilled into a temporary file of the {@link #getSpillDirectory()} directory, which is then read back through a memory-mapped
+   * buffer: hence, the Java heap is not used for it, while the returned input stream still supports {@link InputStream#mark(int) marking}. The
+   * default implementation returns {@link Long#MAX_VALUE}, i.e. bodies are always buffered in memory.
+   * </p>
+   *
+   * @return the maximum number of bytes of a response body buffered in memory
+   */
+  protected long getMemoryBufferThresholdInBytes()
+  {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * @return the directory where the response bodies larger than the {@link #getMemoryBufferThresholdInBytes()} threshold are spilled; when
+   * {@code null}, which is the default, the {@code java.io.tmpdir} directory is used, which is the application cache directory on Android
+   */
+  protected File getSpillDirectory()
+  {
+    return null;
+  }
+
+  /**
+   * Is responsible for returning an HTTP client instance, used for actually running the HTTP requests. The method implementation relies on the
+   * {@link #computeHttpClient()} method, if no {@link OkHttpClient} is currently created.
+   *
+   * @return a valid HTTP client
+   * @throws CallException is the invocation of the {@link #computeHttpClient()} threw an exception
+   * @see #computeHttpClient()
+   * @see #resetHttpClient()
+   */
+  protected final OkHttpClient getHttpClient()
+      throws CallException
+  {
+    if (reuseHttpClient == true)
+    {
+      OkHttpClient client;
+
+      // No lock is taken: when several threads compute the client at the same time, only the first published one is kept
+      while ((client = httpClient.get()) == null)
+      {
+        httpClient.compareAndSet(null, buildHttpClient());
+      }
+
+      return client;
+    }
+    else
+    {
+      return buildHttpClient();
+    }
+  }
+
+  /**
+   * This method will be invoked by the {@link #getHttpClient()} method, when it needs to use a new {@link OkHttpClient}. The method should be
+   * overridden, when the {@link OkHttpClient} to use should be customized; a typical case is when the connection time-outs, the HTTP {@code User-Agent}
+   * parameters need to fine-tuned.
+   * <p/>
+   * <p>
+   * In the case the class uses {@link ReuseOkHttpClient} annotation, this method will be invoked only once, unless several threads run their
+   * first request at the same time.
+   * </p>
+   * <p>
+   * <p>
+   * The default implementation derives the client from a root client shared by all instances, so that they all share the same connection pool
+   * and dispatcher, and hence reuse the connections and the TLS sessions.
+   * </p>
+   *
+   * @return an HTTP client that will be used for running HTTP requests
+   */
+  protected OkHttpClient.Builder computeHttpClient()
+  {
+    if (isUsingVirtualThreads() == true)
+    {
+      if (VirtualThreads.isAvailable() == true)
+      {
+        return VirtualThreadsHttpClientHolder.INSTANCE.newBuilder();
+      }
+
+      if (log.isWarnEnabled() == true)
+      {
+        log.warn("Virtual threads are not available on this runtime: the asynchronous calls are run on platform threads");
+      }
+    }
+
+    return SharedHttpClientHolder.INSTANCE.newBuilder();
+  }
+
+  /**
+   * Indicates whether the requests should be run according to their {@link #getPriority(String, CallType, Map) priority}, so that the background
+   * requests do not delay the ones the user is waiting on. The scheduler is added to the interceptors of the HTTP clients built through the
+   * {@link #computeHttpClient()} method.
+   * <p>
+   * <p>
+   * The scheduler may be shared with other instances. The default implementation returns {@code null}, i.e. the requests are run in the order of
+   * their submission.
+   * </p>
+   *
+   * @return the priority scheduler, or {@code null} if the requests should not be prioritized
+   */
+  protected PriorityScheduler getPriorityScheduler()
+  {
+    return null;
+  }
+
+  /**
+   * Indicates the priority of the given request, which is only taken into account when a {@link #getPriorityScheduler() priority scheduler} is
+   * set. The default implementation returns {@link PriorityScheduler.Priority#Normal}.
+   *
+   * @param uri      the URI of the request
+   * @param callType the type of the request
+   * @param headers  the headers of the request
+   * @return the priority of the request
+   */
+  protected PriorityScheduler.Priority getPriority(String uri, CallType callType, Map<String, String> headers)
+  {
+    return PriorityScheduler.Priority.Normal;
+  }
+
+  /**
+   * Indicates the group the given request belongs to, so that it may be cancelled along with the other requests of the same screen or job, through
+   * the {@link CallGroup#cancelAll()} method. The default implementation returns {@code null}.
+   *
+   * @param uri      the URI of the request
+   * @param callType the type of the request
+   * @param headers  the headers of the request
+   * @return the group of the request, or {@code null} if it does not belong to any
+   */
+  protected CallGroup getCallGroup(String uri, CallType callType, Map<String, String> headers)
+  {
+    return null;
+  }
+
+  /**
+   * Indicates how long the given request may take at most, all its attempts included: the time spent waiting for a
+   * {@link #getPriorityScheduler() priority slot}, its {@link #getRetryPolicy() retries} and the delays between them, and its
+   * {@link #getHedgingPolicy() hedged request}. The time-outs of each attempt are shrunk to the remaining time, no attempt is made once it has
+   * elapsed, and a retry which would only start afterwards is not made, be it asked by the
+   * {@link #onStatusCodeNotOk(String, CallType, Request, Map, Response, int)} method; the request then fails with a
+   * {@link Deadline.DeadlineExceededException}. A {@link #isCoalescingRequest(String, CallType, Map) coalesced} request waits for the identical
+   * request in flight until then at most.
+   * The default implementation returns {@code -1}.
+   *
+   * @param uri      the URI of the request
+   * @param callType the type of the request
+   * @param headers  the headers of the request
+   * @return the duration in milliseconds the request may take, or a negative value if it is only bounded by the time-outs of each attempt
+   */
+  protected long getDeadlineInMilliseconds(String uri, CallType callType, Map<String, String> headers)
+  {
+    return -1;
+  }
+
+  /**
+   * Indicates how the host names should be resolved by the HTTP clients built through the {@link #computeHttpClient()} method. A
+   * {@link CachingDns} spares most of the requests the latency of the resolution, and may {@link CachingDns#prefetch(String...) prefetch} the hosts
+   * known in advance.
+   * <p>
+   * <p>
+   * The default implementation returns {@code null}, i.e. the system resolver is used.
+   * </p>
+   *
+   * @return the resolver to use, or {@code null} if the one of the {@link #computeHttpClient()} builder should be kept
+   */
+  protected Dns computeDns()
+  {
+    return null;
+  }
+
+  /**
+   * Indicates the protocols the HTTP clients built through the {@link #computeHttpClient()} method may use. HTTP/2 multiplexes all the calls to a
+   * host onto a single connection, and is negotiated through TLS. The {@link Protocol#H2_PRIOR_KNOWLEDGE} protocol, which must be the only one of
+   * the list, sends HTTP/2 in clear text without any negotiation, which is suited to the local services known to support it.
+   * <p>
+   * <p>
+   * The dispatcher still bounds the number of the asynchronous calls per host: in order for more calls to be multiplexed, the client should be given
+   * a dispatcher with a higher {@link Dispatcher#setMaxRequestsPerHost(int)} limit through the {@link #computeHttpClient()} method. The default
+   * implementation returns {@code null}, i.e. HTTP/2 and HTTP/1.1 are negotiated.
+   * </p>
+   *
+   * @return the protocols, or {@code null} if the ones of the {@link #computeHttpClient()} builder should be kept
+   */
+  protected List<Protocol> getProtocols()
+  {
+    return null;
+  }
+
+  /**
+   * Indicates how often the HTTP/2 connections should be pinged, so that the idle ones are kept alive by the network equipments, and the dead ones
+   * are detected before a call is sent on them. The default implementation returns {@code 0}, i.e. the connections are never pinged.
+   *
+   * @return the interval in milliseconds between two pings, or {@code 0} if the connections should not be pinged
+   */
+  protected long getPingIntervalInMilliseconds()
+  {
+    return 0;
+  }
+
+  /**
+   * Indicates whether the HTTP clients built through the {@link #computeHttpClient()} method should measure how the calls are spread over their
+   * connections, and in particular how many streams each HTTP/2 connection carries. It replaces the event listener of the
+   * {@link #computeHttpClient()} builder.
+   * <p>
+   * <p>
+   * The default implementation returns {@code null}, i.e. no metrics are gathered.
+   * </p>
+   *
+   * @return the connection metrics to feed, or {@code null}
+   */
+  protected ConnectionMetrics getConnectionMetrics()
+  {
+    return null;
+  }
+
+  /**
+   * Indicates whether the asynchronous calls, see {@link #runRequestAsync(String, CallType, Map, Map, String, List, HttpResponseCallback)}, should
+   * be run on virtual threads rather than on the platform threads of the OkHttp dispatcher. This is only relevant on JVM runtimes which provide
+   * virtual threads (Java 21 and above): elsewhere, and on Android, the setting is ignored.
+   * <p>
+   * <p>
+   * The blocking calls are run on the calling thread: in order for them to benefit from virtual threads, run them from an executor returned by
+   * {@link VirtualThreads#newVirtualThreadPerTaskExecutor()}. The {@link #getHttpClient()} method does not take any lock, hence does not pin the
+   * virtual threads to their carrier thread. The default implementation returns {@code false}.
+   * </p>
+   *
+   * @return {@code true} if the HTTP client should dispatch its asynchronous calls on virtual threads
+   * @see VirtualThreads
+   */
+  protected boolean isUsingVirtualThreads()
+  {
+    return false;
+  }
+
+  /**
+   * Invoked when the result of the HTTP request is not <code>20X</code>. The default implementation logs the problem and throws an exception.
+   *
+   * @param uri           the URI of the HTTP call
    * @param callType      the type of the HTTP method
    * @param request       the original request
    * @param headers       the original headers of the request. They can be edited in order to manage some scenarios with tokens
@@ -288,14 +1013,82 @@ public abstract class OkHttpClientWebServiceCaller
     throw new CallException(message, response.code());
   }
 
+  /**
+   * Indicates how the failed requests should be retried, before the {@link #onStatusCodeNotOk(String, CallType, Request, Map, Response, int)} method
+   * is invoked. Both the blocking and the asynchronous requests are concerned: the blocking ones wait on the calling thread before being run
+   * again. The requests which upload an {@link InputStreamRequestBody#isRepeatable() unbuffered stream} are never retried.
+   * <p>
+   * <p>
+   * The default implementation returns {@code null}, i.e. the requests are only retried when the
+   * {@link #onStatusCodeNotOk(String, CallType, Request, Map, Response, int)} method asks for it.
+   * </p>
+   *
+   * @return the retry policy, or {@code null} if the requests should not be retried
+   */
+  protected RetryPolicy getRetryPolicy()
+  {
+    return null;
+  }
+
+  /**
+   * Indicates whether the GET and HEAD requests which are slow to get a response should be sent a second time, the first response being kept and
+   * the other request being cancelled. This trims the latency of the slowest requests, at the cost of a bounded additional load on the servers.
+   * Only the blocking requests are concerned.
+   * <p>
+   * <p>
+   * The first request is still run on the calling thread, and only the second one goes through the dispatcher. The hedging delay is measured from
+   * the moment the first request is sent on a connection, so that a request waiting for a connection is not hedged. The default implementation
+   * returns {@code null}, i.e. the requests are never hedged.
+   * </p>
+   *
+   * @return the hedging policy, or {@code null} if the requests should not be hedged
+   */
+  protected HedgingPolicy getHedgingPolicy()
+  {
+    return null;
+  }
+
+  /**
+   * Indicates whether the requests to a host which keeps failing, or which has become too slow, should fail immediately with a
+   * {@link CircuitBreaker.CircuitOpenException} instead of waiting for a time-out, until the host recovers. A call is considered as failed when it
+   * throws an {@link IOException} or when its response has a server error status code. Both the blocking and the asynchronous requests are
+   * concerned.
+   * <p>
+   * <p>
+   * The default implementation returns {@code null}, i.e. the requests are always attempted.
+   * </p>
+   *
+   * @return the circuit breaker, or {@code null} if the requests should always be attempted
+   */
+  protected CircuitBreaker getCircuitBreaker()
+  {
+    return null;
+  }
+
   @CallSuper
   protected void onBeforeHttpRequestExecution(OkHttpClient httpClient, Request.Builder requestBuilder,
       CallType callType)
       throws CallException
   {
-    if (acceptGzip == true)
+    // The "Accept-Encoding" header set by the caller, on a download for instance, prevails
+    if (acceptGzip == true && requestBuilder.build().header("Accept-Encoding") == null)
     {
-      requestBuilder.addHeader("Accept-Encoding", "gzip");
+      final StringBuilder acceptEncoding = new StringBuilder();
+
+      for (final ContentDecoder contentDecoder : getContentDecoders())
+      {
+        if (acceptEncoding.length() > 0)
+        {
+          acceptEncoding.append(", ");
+        }
+
+        acceptEncoding.append(contentDecoder.getEncoding());
+      }
+
+      if (acceptEncoding.length() > 0)
+      {
+        requestBuilder.addHeader("Accept-Encoding", acceptEncoding.toString());
+      }
     }
   }
 
@@ -303,7 +1096,8 @@ public abstract class OkHttpClientWebServiceCaller
    * Invoked on every call, in order to extract the input stream from the response.
    * <p>
    * <p>
-   * If the content type is gzipped, this is the ideal place for unzipping it.
+   * When the {@code acceptGzip} flag is set, the body has already been decoded according to its {@code Content-Encoding} header, see
+   * {@link #getContentDecoders()}.
    * </p>
    *
    * @param uri          the web call initial URI
@@ -317,7 +1111,7 @@ public abstract class OkHttpClientWebServiceCaller
   {
     if (callType.verb != Verb.Head)
     {
-      final InputStream content = new ByteArrayInputStream(responseBody.bytes());
+      final InputStream content = bufferContent(responseBody);
 
       if (WebServiceCaller.ARE_DEBUG_LOG_ENABLED == true && log.isDebugEnabled() == true)
       {
@@ -406,9 +1200,53 @@ public abstract class OkHttpClientWebServiceCaller
     return null;
   }
 
+  /**
+   * Invoked instead of the {@link #getContent(String, CallType, ResponseBody)} method when the response is streamed, in order to extract the input
+   * stream from the response.
+   * <p>
+   * <p>
+   * The returned input stream reads directly from the connection: closing it releases the connection.
+   * </p>
+   *
+   * @param uri          the web call initial URI
+   * @param callType     the kind of request
+   * @param responseBody the {@link ResponseBody} object
+   * @return the input stream of the response or null if the {@link CallType} <code>Verb.Head</code>
+   * @throws IOException if some exception occurred while extracting the content of the response
+   * @see #isStreamingResponse(String, CallType, Map)
+   */
+  protected InputStream getStreamedContent(String uri, CallType callType, ResponseBody responseBody)
+      throws IOException
+  {
+    if (callType.verb != Verb.Head)
+    {
+      return responseBody.byteStream();
+    }
+
+    return null;
+  }
+
   protected Response performHttpRequest(String uri, CallType callType, Map<String, String> headers,
       Map<String, String> parameters, String body, List<MultipartFile> files)
       throws IOException, CallException
+  {
+    final Request.Builder requestBuilder = computeRequestBuilder(uri, callType, headers, parameters, body, files);
+    return decodeResponse(callType, performHttpRequest(uri, callType, headers, requestBuilder));
+  }
+
+  protected int getConnectTimeOut()
+  {
+    return connectTimeOutInMilliseconds;
+  }
+
+  protected int getReadTimeOut()
+  {
+    return readTimeOutInMilliseconds;
+  }
+
+  private Request.Builder computeRequestBuilder(String uri, CallType callType, Map<String, String> headers,
+      Map<String, String> parameters, String body, List<MultipartFile> files)
+      throws IOException
   {
     final Request.Builder requestBuilder = new Request.Builder();
 
@@ -431,17 +1269,12 @@ public abstract class OkHttpClientWebServiceCaller
         requestBuilder.delete(computeRequestBody(uri, callType, headers, parameters, body, files));
         break;
     }
-    return performHttpRequest(uri, callType, headers, parameters, body, files, requestBuilder, 0);
-  }
 
-  protected int getConnectTimeOut()
-  {
-    return connectTimeOutInMilliseconds;
-  }
+    // The deadline starts with the request, and is shared by all its attempts
+    final long deadlineInMilliseconds = getDeadlineInMilliseconds(uri, callType, headers);
+    requestBuilder.tag(Deadline.class, deadlineInMilliseconds < 0 ? null : Deadline.after(deadlineInMilliseconds));
 
-  protected int getReadTimeOut()
-  {
-    return readTimeOutInMilliseconds;
+    return requestBuilder;
   }
 
   private RequestBody computeRequestBody(String uri, CallType callType, Map<String, String> headers,
@@ -460,12 +1293,15 @@ public abstract class OkHttpClientWebServiceCaller
       return computeMultipartBody(parameters, body, files);
     }
 
-    if (bodyType == RequestBodyType.JsonBody)
+    final RequestBody requestBody = bodyType == RequestBodyType.JsonBody ? computeJsonBody(body) : computeFormBody(parameters);
+    final long compressionThreshold = getBodyCompressionThreshold(uri, callType, headers, bodyType);
+
+    if (compressionThreshold >= 0 && requestBody.contentLength() > compressionThreshold)
     {
-      return computeJsonBody(body);
+      return new GzipRequestBody(requestBody);
     }
 
-    return computeFormBody(parameters);
+    return requestBody;
   }
 
   private RequestBody computeJsonBody(String body)
@@ -500,7 +1336,7 @@ public abstract class OkHttpClientWebServiceCaller
     {
       for (final MultipartFile file : files)
       {
-        builder.addFormDataPart(file.name, file.fileName, RequestBody.create(MediaType.parse(file.contentType), inputStreamToByteArray(file.inputStream)));
+        builder.addFormDataPart(file.name, file.fileName, new InputStreamRequestBody(MediaType.parse(file.contentType), file.inputStream));
       }
     }
 
@@ -520,35 +1356,204 @@ public abstract class OkHttpClientWebServiceCaller
     return builder.build();
   }
 
-  private byte[] inputStreamToByteArray(InputStream is)
-      throws IOException
+  /**
+   * Runs the HTTP request and returns its response, once neither the {@link #getRetryPolicy() retry policy} nor the
+   * {@link #onStatusCodeNotOk(String, CallType, Request, Map, Response, int)} method require it to be run again.
+   *
+   * @throws CallException is the uri is {@code null}, the connectivity has been lost or the circuit of the host is open
+   */
+  private Response performHttpRequest(String uri, CallType callType, Map<String, String> headers,
+      Request.Builder requestBuilder)
+      throws IOException, CallException
   {
-    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    int reads = is.read();
+    final RetryPolicy retryPolicy = getRetryPolicy();
+    final HedgingPolicy hedgingPolicy = callType.verb == Verb.Get || callType.verb == Verb.Head ? getHedgingPolicy() : null;
+    int attemptsCount = 0;
 
-    while (reads != -1)
+    while (true)
     {
-      baos.write(reads);
-      reads = is.read();
-    }
+      final OkHttpClient httpClient = getHttpClient();
+      final Request request = prepareRequest(httpClient, uri, callType, headers, requestBuilder, attemptsCount);
+      final long start = System.currentTimeMillis();
+      final Call call = hedgingPolicy == null ? httpClient.newCall(request) : null;
+      final HedgedExchange exchange = hedgingPolicy == null ? null : new HedgedExchange(httpClient, hedgingPolicy);
+      Response response = null;
+      IOException exception = null;
+      boolean canceled = false;
+      boolean completed = false;
 
-    return baos.toByteArray();
-  }
-
-  /**
-   * Is responsible for returning an HTTP client instance, used for actually running the HTTP requests.
-   * <p>
-   * <p>
-   * The current implementation returns a {@link Response} instance.
-   * </p>
+      try
+      {
+        try
+        {
+          response = call != null ? call.execute() : exchange.execute(request);
+        }
+        catch (IOException ioException)
+        {
+          exception = ioException;
+          canceled = (call != null ? call.isCanceled() : exchange.isCanceled()) == true || Thread.currentThread().isInterrupted() == true || exception instanceof Deadline.DeadlineExceededException;
+        }
+
+        completed = true;
+      }
+      finally
+      {
+        // A throwable other than an I/O exception, raised by an interceptor for instance, is held against the host as well, otherwise the trial call
+        // of a half-open circuit would never be released
+        onCallOver(request, completed == false || isFailed(response, exception), canceled, start);
+      }
+
+      if (canceled == true)
+      {
+        // A cancelled request is not retried, nor is a request whose deadline has expired
+        throw exception;
+      }
+
+      final long retryDelayInMilliseconds = computeRetryDelay(retryPolicy, uri, callType, headers, request, response, exception, start, attemptsCount);
+
+      if (retryDelayInMilliseconds < 0)
+      {
+        if (exception != null)
+        {
+          throw exception;
+        }
+
+        return response;
+      }
+
+      if (retryDelayInMilliseconds > 0)
+      {
+        try
+        {
+          Thread.sleep(retryDelayInMilliseconds);
+        }
+        catch (InterruptedException interruptedException)
+        {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for retrying the HTTP request '" + uri + "'");
+        }
+      }
+
+      attemptsCount++;
+    }
+  }
+
+  private void enqueueHttpRequest(final HttpResponseFuture future, final String uri, final CallType callType,
+      final Map<String, String> headers, final boolean streamResponse, final Request.Builder requestBuilder, final int attemptsCount)
+      throws IOException, CallException
+  {
+    final RetryPolicy retryPolicy = getRetryPolicy();
+    final OkHttpClient httpClient = getHttpClient();
+    final Request request = prepareRequest(httpClient, uri, callType, headers, requestBuilder, attemptsCount);
+    final long start = System.currentTimeMillis();
+    final Call call = httpClient.newCall(request);
+
+    future.setCall(call);
+    call.enqueue(new Callback()
+    {
+      @Override
+      public void onFailure(Call call, IOException exception)
+      {
+        final boolean canceled = call.isCanceled() == true || exception instanceof Deadline.DeadlineExceededException;
+        onCallOver(request, true, canceled, start);
+
+        try
+        {
+          if (canceled == true || future.isCancelled() == true || retryLater(computeRetryDelay(retryPolicy, uri, callType, headers, request, null, exception, start, attemptsCount)) == false)
+          {
+            future.fail(new CallException(exception));
+          }
+        }
+        catch (CallException callException)
+        {
+          future.fail(callException);
+        }
+      }
+
+      @Override
+      public void onResponse(Call call, Response response)
+      {
+        onCallOver(request, isFailed(response, null), false, start);
+
+        try
+        {
+          if (retryLater(computeRetryDelay(retryPolicy, uri, callType, headers, request, response, null, start, attemptsCount)) == true)
+          {
+            return;
+          }
+
+          final HttpResponse httpResponse = computeHttpResponse(uri, callType, streamResponse, decodeResponse(callType, response));
+
+          if (future.complete(httpResponse) == false && httpResponse.inputStream != null)
+          {
+            // The future has been cancelled meanwhile: nobody will ever close the streamed response
+            httpResponse.inputStream.close();
+          }
+        }
+        catch (CallException exception)
+        {
+          future.fail(exception);
+        }
+        catch (Exception exception)
+        {
+          future.fail(new CallException(exception));
+        }
+      }
+
+      private boolean retryLater(long retryDelayInMilliseconds)
+      {
+        if (retryDelayInMilliseconds < 0)
+        {
+          return false;
+        }
+
+        final Runnable retry = new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            if (future.isCancelled() == true)
+            {
+              return;
+            }
+
+            try
+            {
+              enqueueHttpRequest(future, uri, callType, headers, streamResponse, requestBuilder, attemptsCount + 1);
+            }
+            catch (CallException exception)
+            {
+              future.fail(exception);
+            }
+            catch (Exception exception)
+            {
+              future.fail(new CallException(exception));
+            }
+          }
+        };
+
+        if (retryDelayInMilliseconds == 0)
+        {
+          retry.run();
+        }
+        else
+        {
+          RetrySchedulerHolder.INSTANCE.schedule(retry, retryDelayInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Builds the request of the given attempt, and logs it.
    *
-   * @return a valid HTTP client
-   * @throws CallException is the uri is {@code null} or the connectivity has been lost
+   * @throws CallException is the uri is {@code null}, the connectivity has been lost or the circuit of the host is open
    */
-  private Response performHttpRequest(String uri, CallType callType, Map<String, String> headers,
-      Map<String, String> paramaters, String body, List<MultipartFile> files, Request.Builder requestBuilder,
-      int attemptsCount)
-      throws IOException, CallException
+  private Request prepareRequest(OkHttpClient httpClient, String uri, CallType callType, Map<String, String> headers,
+      Request.Builder requestBuilder, int attemptsCount)
+      throws CallException
   {
     if (uri == null)
     {
@@ -574,11 +1579,17 @@ public abstract class OkHttpClientWebServiceCaller
       }
     }
 
-    final OkHttpClient httpClient = getHttpClient();
-
+    requestBuilder.tag(PriorityScheduler.Priority.class, getPriority(uri, callType, headers));
+    requestBuilder.tag(CallGroup.class, getCallGroup(uri, callType, headers));
     onBeforeHttpRequestExecution(httpClient, requestBuilder, callType);
 
-    final Request request = requestBuilder.build();
+    final Request request = withContentEncoding(requestBuilder.build());
+    final CircuitBreaker circuitBreaker = getCircuitBreaker();
+
+    if (circuitBreaker != null && circuitBreaker.tryAcquirePermission(request.url().host()) == false)
+    {
+      throw new CallException(new CircuitBreaker.CircuitOpenException(request.url().host()));
+    }
 
     if (log.isDebugEnabled() == true)
     {
@@ -594,7 +1605,10 @@ public abstract class OkHttpClientWebServiceCaller
 
           if (request.body() != null)
           {
-            if (request.body().contentLength() <= WebServiceCaller.BODY_MAXIMUM_SIZE_LOGGED_IN_BYTES)
+            final long contentLength = request.body().contentLength();
+
+            // A body of unknown length may be streamed, and hence could not be sent anymore once logged
+            if (contentLength >= 0 && contentLength <= WebServiceCaller.BODY_MAXIMUM_SIZE_LOGGED_IN_BYTES)
             {
               logCurlCommand = true;
 
@@ -636,8 +1650,65 @@ public abstract class OkHttpClientWebServiceCaller
       log.debug("Running the HTTP " + callType + " request '" + uri + "'" + sb.toString() + (logCurlCommand == true ? curlSb.toString() : ""));
     }
 
-    final long start = System.currentTimeMillis();
-    final Response response = httpClient.newCall(request).execute();
+    return request;
+  }
+
+  /**
+   * Indicates whether an attempt should be held against its host by the {@link #getCircuitBreaker() circuit breaker}.
+   */
+  private static boolean isFailed(Response response, IOException exception)
+  {
+    return exception != null || (response != null && response.code() >= HttpURLConnection.HTTP_INTERNAL_ERROR);
+  }
+
+  /**
+   * Reports the outcome of an attempt to the {@link #getCircuitBreaker() circuit breaker}. A cancelled call is neither held against its host nor
+   * counted as a success.
+   */
+  private void onCallOver(Request request, boolean failed, boolean canceled, long start)
+  {
+    final CircuitBreaker circuitBreaker = getCircuitBreaker();
+
+    if (circuitBreaker == null)
+    {
+      return;
+    }
+
+    if (canceled == true)
+    {
+      circuitBreaker.onCallCanceled(request.url().host());
+    }
+    else
+    {
+      circuitBreaker.onCallOver(request.url().host(), failed, System.currentTimeMillis() - start);
+    }
+  }
+
+  /**
+   * Logs the outcome of an attempt, and indicates whether the request should be run again, according to the {@link #getRetryPolicy() retry policy}
+   * first, and then to the {@link #onStatusCodeNotOk(String, CallType, Request, Map, Response, int)} method. The response is closed when the
+   * request is run again. A request whose body {@link InputStreamRequestBody#isRepeatable(RequestBody) cannot be sent twice} is never run again.
+   *
+   * @return the delay in milliseconds before running the request again, or a negative value if it should not be run again
+   */
+  private long computeRetryDelay(RetryPolicy retryPolicy, String uri, CallType callType, Map<String, String> headers,
+      Request request, Response response, IOException exception, long start, int attemptsCount)
+      throws CallException
+  {
+    final boolean repeatable = InputStreamRequestBody.isRepeatable(request.body());
+
+    if (response == null)
+    {
+      final long retryDelayInMilliseconds = retryPolicy == null || repeatable == false ? -1 : withinDeadline(request, retryPolicy.computeRetryDelayInMilliseconds(request.url().host(), callType, attemptsCount + 1, null, exception));
+
+      if (retryDelayInMilliseconds >= 0 && log.isWarnEnabled() == true)
+      {
+        log.warn("The call to the HTTP " + callType + " request '" + uri + "' failed: retrying it in " + retryDelayInMilliseconds + " ms", exception);
+      }
+
+      return retryDelayInMilliseconds;
+    }
+
     final int statusCode = response.code();
     final StringBuilder responseHeadersSb = new StringBuilder();
 
@@ -660,17 +1731,423 @@ public abstract class OkHttpClientWebServiceCaller
       log.debug("The call to the HTTP " + callType + " request '" + uri + "' took " + (System.currentTimeMillis() - start) + " ms and returned the status code " + statusCode + (responseHeadersSb.length() <= 0 ? "" : " with the HTTP headers:" + responseHeadersSb.toString()));
     }
 
+    if (retryPolicy != null && repeatable == true)
+    {
+      final long retryDelayInMilliseconds = withinDeadline(request, retryPolicy.computeRetryDelayInMilliseconds(request.url().host(), callType, attemptsCount + 1, response, null));
+
+      if (retryDelayInMilliseconds >= 0)
+      {
+        if (log.isWarnEnabled() == true)
+        {
+          log.warn("The call to the HTTP " + callType + " request '" + uri + "' returned the status code " + statusCode + ": retrying it in " + retryDelayInMilliseconds + " ms");
+        }
+
+        response.close();
+        return retryDelayInMilliseconds;
+      }
+    }
+
+    if (statusCode == 416 && request.tag(ResumedDownload.class) != null)
+    {
+      // The download decides whether the partial file is complete or should be downloaded again
+      return -1;
+    }
+
     if (!(statusCode >= HttpURLConnection.HTTP_OK && statusCode <= HttpURLConnection.HTTP_MULT_CHOICE))
     {
       if (onStatusCodeNotOk(uri, callType, request, headers, response, attemptsCount + 1) == true)
       {
-        return performHttpRequest(uri, callType, headers, paramaters, body, files, requestBuilder, attemptsCount + 1);
+        response.close();
+
+        if (withinDeadline(request, 0) < 0)
+        {
+          // The request is not run again once its deadline has expired
+          throw new CallException(new Deadline.DeadlineExceededException());
+        }
+
+        if (repeatable == false)
+        {
+          throw new CallException("The HTTP " + callType + " request '" + uri + "' cannot be run again, since its body cannot be sent twice", statusCode);
+        }
+
+        return 0;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * @return the given retry delay, or {@code -1} if the retry would not start before the {@link Deadline} of the request, if any
+   */
+  private static long withinDeadline(Request request, long retryDelayInMilliseconds)
+  {
+    final Deadline deadline = request.tag(Deadline.class);
+    return retryDelayInMilliseconds >= 0 && deadline != null && retryDelayInMilliseconds >= deadline.getRemainingInMilliseconds() ? -1 : retryDelayInMilliseconds;
+  }
+
+  private HttpResponse runCoalescedRequest(String uri, CallType callType, Map<String, String> headers)
+      throws CallException
+  {
+    final CallGroup callGroup = getCallGroup(uri, callType, headers);
+
+    if (callGroup != null && callGroup.isCancelled() == true)
+    {
+      // The response of a request in flight must not be handed over to a caller whose group has already been cancelled
+      throw new CallException(new IOException("Canceled"));
+    }
+
+    final List<Object> key = computeCoalescingKey(uri, callType, headers, callGroup);
+    final InFlightRequest inFlightRequest = new InFlightRequest();
+    final InFlightRequest leadingRequest = inFlightRequests.putIfAbsent(key, inFlightRequest);
+
+    if (leadingRequest != null)
+    {
+      if (log.isDebugEnabled() == true)
+      {
+        log.debug("Waiting for the identical in-flight HTTP " + callType + " request '" + uri + "'");
+      }
+
+      final long deadlineInMilliseconds = getDeadlineInMilliseconds(uri, callType, headers);
+      return leadingRequest.await(deadlineInMilliseconds < 0 ? null : Deadline.after(deadlineInMilliseconds));
+    }
+
+    try
+    {
+      final HttpResponse httpResponse = computeHttpResponse(uri, callType, false, performHttpRequest(uri, callType, headers, null, null, null));
+      final ByteBuffer content;
+
+      if (httpResponse.inputStream == null)
+      {
+        content = null;
+      }
+      else if (httpResponse.inputStream instanceof ByteBufferInputStream)
+      {
+        // The body buffered by the getContent() method, possibly spilled into a file, is shared as is
+        content = ((ByteBufferInputStream) httpResponse.inputStream).content();
+      }
+      else
+      {
+        // The getContent() method has been overridden: its stream has to be read into memory in order to be shared
+        final BufferedSource source = Okio.buffer(Okio.source(httpResponse.inputStream));
+
+        try
+        {
+          content = ByteBuffer.wrap(source.readByteArray());
+        }
+        finally
+        {
+          source.close();
+        }
+      }
+
+      inFlightRequest.complete(httpResponse.headers, httpResponse.statusCode, content);
+      return inFlightRequest.newHttpResponse();
+    }
+    catch (CallException exception)
+    {
+      inFlightRequest.fail(exception);
+      throw exception;
+    }
+    catch (Exception exception)
+    {
+      final CallException callException = new CallException(exception);
+      inFlightRequest.fail(callException);
+      throw callException;
+    }
+    finally
+    {
+      inFlightRequests.remove(key, inFlightRequest);
+    }
+  }
+
+  /**
+   * @return the identity of the request, the call group being compared by reference
+   */
+  private List<Object> computeCoalescingKey(String uri, CallType callType, Map<String, String> headers, CallGroup callGroup)
+  {
+    final StringBuilder key = new StringBuilder(callType.verb.toString()).append(' ').append(uri);
+
+    if (headers != null && headers.isEmpty() == false)
+    {
+      final List<String> headerNames = getCoalescingHeaderNames();
+      final Map<String, String> sortedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+      for (final Map.Entry<String, String> header : headers.entrySet())
+      {
+        if (headerNames == null || containsIgnoreCase(headerNames, header.getKey()) == true)
+        {
+          sortedHeaders.put(header.getKey(), header.getValue());
+        }
+      }
+
+      for (final Map.Entry<String, String> header : sortedHeaders.entrySet())
+      {
+        key.append('\n').append(header.getKey().toLowerCase(Locale.ENGLISH)).append(": ").append(header.getValue());
+      }
+    }
+
+    return Arrays.<Object>asList(key.toString(), callGroup);
+  }
+
+  private static boolean containsIgnoreCase(List<String> values, String value)
+  {
+    for (final String candidate : values)
+    {
+      if (candidate.equalsIgnoreCase(value) == true)
+      {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Turns the response into an {@link HttpResponse}, and closes it unless its body is streamed.
+   */
+  private HttpResponse computeHttpResponse(String uri, CallType callType, boolean streamResponse, Response response)
+      throws IOException
+  {
+    boolean closeResponse = true;
+
+    try
+    {
+      final Map<String, List<String>> headerFields = new HeadersMap(response.headers());
+      final int statusCode = response.code();
+      final InputStream inputStream = streamResponse == true ? getStreamedContent(uri, callType, response.body()) : getContent(uri, callType, response.body());
+
+      if (streamResponse == true && inputStream != null)
+      {
+        // The caller now owns the response: closing the input stream releases the underlying connection
+        closeResponse = false;
+      }
+
+      return new HttpResponse(headerFields, statusCode, inputStream, inputStream);
+    }
+    finally
+    {
+      if (closeResponse == true)
+      {
+        response.close();
+      }
+    }
+  }
+
+  private OkHttpClient buildHttpClient()
+      throws CallException
+  {
+    try
+    {
+      final OkHttpClient.Builder builder = computeHttpClient();
+      final Dns dns = computeDns();
+
+      if (dns != null)
+      {
+        builder.dns(dns);
+      }
+
+      final List<Protocol> protocols = getProtocols();
+
+      if (protocols != null)
+      {
+        builder.protocols(protocols);
+      }
+
+      final long pingIntervalInMilliseconds = getPingIntervalInMilliseconds();
+
+      if (pingIntervalInMilliseconds > 0)
+      {
+        builder.pingInterval(pingIntervalInMilliseconds, TimeUnit.MILLISECONDS);
+      }
+
+      final PriorityScheduler priorityScheduler = getPriorityScheduler();
+
+      if (priorityScheduler != null)
+      {
+        builder.addInterceptor(priorityScheduler);
+      }
+
+      // Comes after the priority scheduler, so that the time spent waiting for a slot is taken from the budget of the attempt
+      builder.addInterceptor(new Deadline.DeadlineInterceptor());
+
+      final ConnectionMetrics connectionMetrics = getConnectionMetrics();
+
+      if (connectionMetrics != null)
+      {
+        builder.eventListener(connectionMetrics);
+      }
+
+      if (getHedgingPolicy() != null)
+      {
+        builder.addNetworkInterceptor(new HedgedExchange.SentRequestInterceptor());
+      }
+
+      // Comes first, so that a call is registered only once in its group
+      builder.interceptors().add(0, new CallGroup.CallGroupInterceptor());
+
+      return builder.build();
+    }
+    catch (Exception exception)
+    {
+      throw new CallException("Cannot instantiate the 'HttpClient'", exception);
+    }
+  }
+
+  /**
+   * Since the {@code Accept-Encoding} header is set explicitly when the {@code acceptGzip} flag is set, OkHttp does not decode the response
+   * body transparently: this is done here, through the {@link #getContentDecoders() decoders}.
+   */
+  private Response decodeResponse(CallType callType, Response response)
+      throws IOException
+  {
+    final String contentEncoding = response.header("Content-Encoding");
+
+    // Those responses have no body, whatever their headers
+    final boolean hasNoBody = callType.verb == Verb.Head || response.code() == HttpURLConnection.HTTP_NO_CONTENT || response.code() == HttpURLConnection.HTTP_NOT_MODIFIED;
+
+    if (acceptGzip == false || contentEncoding == null || hasNoBody == true)
+    {
+      return response;
+    }
+
+    for (final ContentDecoder contentDecoder : getContentDecoders())
+    {
+      if (contentDecoder.getEncoding().equalsIgnoreCase(contentEncoding.trim()) == true)
+      {
+        final ResponseBody responseBody = response.body();
+        final Source decodedSource;
+
+        try
+        {
+          decodedSource = contentDecoder.decode(responseBody.source());
+        }
+        catch (IOException exception)
+        {
+          response.close();
+          throw exception;
+        }
+
+        return response.newBuilder()
+            .removeHeader("Content-Encoding")
+            .removeHeader("Content-Length")
+            .body(ResponseBody.create(responseBody.contentType(), -1, Okio.buffer(decodedSource)))
+            .build();
       }
     }
 
     return response;
   }
 
+  private InputStream bufferContent(ResponseBody responseBody)
+      throws IOException
+  {
+    final long threshold = getMemoryBufferThresholdInBytes();
+    final long contentLength = responseBody.contentLength();
+
+    if (contentLength >= 0 && contentLength <= threshold)
+    {
+      return new ByteBufferInputStream(ByteBuffer.wrap(responseBody.bytes()));
+    }
+
+    final BufferedSource source = responseBody.source();
+
+    try
+    {
+      // The body is read up to the threshold, in order to find out whether it fits into memory
+      if (threshold == Long.MAX_VALUE || source.request(threshold + 1) == false)
+      {
+        return new ByteBufferInputStream(ByteBuffer.wrap(source.readByteArray()));
+      }
+
+      final File spillFile = File.createTempFile(OkHttpClientWebServiceCaller.SPILL_FILE_PREFIX, null, getSpillDirectory());
+
+      try
+      {
+        final Sink sink = Okio.sink(spillFile);
+
+        try
+        {
+          source.readAll(sink);
+        }
+        finally
+        {
+          sink.close();
+        }
+
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(spillFile, "r");
+
+        try
+        {
+          final FileChannel fileChannel = randomAccessFile.getChannel();
+
+          if (fileChannel.size() > Integer.MAX_VALUE)
+          {
+            throw new IOException("The HTTP response body of " + fileChannel.size() + " bytes is too large to be buffered");
+          }
+
+          // The mapping remains valid once the channel is closed and the file deleted
+          return new ByteBufferInputStream(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size()));
+        }
+        finally
+        {
+          randomAccessFile.close();
+        }
+      }
+      finally
+      {
+        if (spillFile.delete() == false)
+        {
+          spillFile.deleteOnExit();
+        }
+      }
+    }
+    finally
+    {
+      source.close();
+    }
+  }
+
+  private String readFile(File file)
+      throws IOException
+  {
+    final BufferedSource source = Okio.buffer(Okio.source(file));
+
+    try
+    {
+      return source.readUtf8();
+    }
+    finally
+    {
+      source.close();
+    }
+  }
+
+  private void writeFile(File file, String content)
+      throws IOException
+  {
+    final BufferedSink sink = Okio.buffer(Okio.sink(file));
+
+    try
+    {
+      sink.writeUtf8(content);
+    }
+    finally
+    {
+      sink.close();
+    }
+  }
+
+  private Request withContentEncoding(Request request)
+  {
+    if (request.body() instanceof GzipRequestBody)
+    {
+      return request.newBuilder().header("Content-Encoding", "gzip").build();
+    }
+
+    return request;
+  }
+
   private String bodyAsString(Request request)
       throws IOException
   {
@@ -0,0 +1,367 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * An {@link Interceptor} which runs the calls according to their priority, see {@link OkHttpClientWebServiceCaller#getPriorityScheduler()}.
+ * <p>
+ * <p>
+ * The priority of a call is read from its {@code Priority} tag, and defaults to {@link Priority#Normal}. The calls share a number of concurrency
+ * slots: the last ones are reserved to the {@link Priority#High} calls, and the {@link Priority#Low} calls may only use a few of them, so that a
+ * burst of background calls cannot delay the calls the user is waiting on. When no slot is available, the calls wait in the order of their
+ * priority; since the waiting calls age, i.e. rank one priority higher every aging interval, the low priority calls cannot starve. A call waits
+ * at most until its {@link Deadline}, if any, and then fails with a {@link Deadline.DeadlineExceededException}. A call holds
+ * its slot until its response body has been fully read or closed, since it keeps its connection until then.
+ * </p>
+ * <p>
+ * <p>
+ * The OkHttp dispatcher still runs the asynchronous calls in order, within its own limits: the scheduler only orders the calls it lets through.
+ * A same scheduler may be shared by several clients.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public class PriorityScheduler
+    implements Interceptor
+{
+
+  public enum Priority
+  {
+    Low, Normal, High
+  }
+
+  private static final class Waiter
+  {
+
+    private final Priority priority;
+
+    private final long rank;
+
+    private final long sequence;
+
+    private final Condition condition;
+
+    private boolean granted;
+
+    private Waiter(Priority priority, long rank, long sequence, Condition condition)
+    {
+      this.priority = priority;
+      this.rank = rank;
+      this.sequence = sequence;
+      this.condition = condition;
+    }
+
+  }
+
+  public static final int DEFAULT_MAXIMUM_CALLS_COUNT = 10;
+
+  public static final int DEFAULT_HIGH_PRIORITY_RESERVED_CALLS_COUNT = 2;
+
+  public static final int DEFAULT_MAXIMUM_LOW_PRIORITY_CALLS_COUNT = 3;
+
+  public static final long DEFAULT_AGING_INTERVAL_IN_MILLISECONDS = 2 * 1000;
+
+  public final int maximumCallsCount;
+
+  /**
+   * The number of slots only the {@link Priority#High} calls may use.
+   */
+  public final int highPriorityReservedCallsCount;
+
+  public final int maximumLowPriorityCallsCount;
+
+  /**
+   * How long a call waits before ranking one priority higher.
+   */
+  public final long agingIntervalInMilliseconds;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final TreeSet<Waiter> waiters = new TreeSet<>(new Comparator<Waiter>()
+  {
+    @Override
+    public int compare(Waiter waiter, Waiter otherWaiter)
+    {
+      if (waiter.rank != otherWaiter.rank)
+      {
+        return waiter.rank < otherWaiter.rank ? -1 : 1;
+      }
+
+      return waiter.sequence < otherWaiter.sequence ? -1 : (waiter.sequence == otherWaiter.sequence ? 0 : 1);
+    }
+  });
+
+  private long sequence;
+
+  private int callsCount;
+
+  private int lowPriorityCallsCount;
+
+  public PriorityScheduler()
+  {
+    this(PriorityScheduler.DEFAULT_MAXIMUM_CALLS_COUNT, PriorityScheduler.DEFAULT_HIGH_PRIORITY_RESERVED_CALLS_COUNT, PriorityScheduler.DEFAULT_MAXIMUM_LOW_PRIORITY_CALLS_COUNT, PriorityScheduler.DEFAULT_AGING_INTERVAL_IN_MILLISECONDS);
+  }
+
+  public PriorityScheduler(int maximumCallsCount, int highPriorityReservedCallsCount, int maximumLowPriorityCallsCount,
+      long agingIntervalInMilliseconds)
+  {
+    this.maximumCallsCount = Math.max(1, maximumCallsCount);
+    this.highPriorityReservedCallsCount = Math.max(0, Math.min(highPriorityReservedCallsCount, this.maximumCallsCount - 1));
+    this.maximumLowPriorityCallsCount = Math.max(1, maximumLowPriorityCallsCount);
+    this.agingIntervalInMilliseconds = agingIntervalInMilliseconds;
+  }
+
+  @Override
+  public Response intercept(Chain chain)
+      throws IOException
+  {
+    final Request request = chain.request();
+
+    if (request.cacheControl().onlyIfCached() == true)
+    {
+      return chain.proceed(request);
+    }
+
+    final Priority tag = request.tag(Priority.class);
+    final Priority priority = tag == null ? Priority.Normal : tag;
+
+    acquire(priority, request.tag(Deadline.class));
+    final Response response;
+
+    try
+    {
+      response = chain.proceed(request);
+    }
+    catch (IOException | RuntimeException exception)
+    {
+      release(priority);
+      throw exception;
+    }
+
+    final ResponseBody body = response.body();
+
+    if (body == null)
+    {
+      release(priority);
+      return response;
+    }
+
+    final AtomicBoolean released = new AtomicBoolean();
+    final ResponseBody scheduledBody = ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(new ForwardingSource(body.source())
+    {
+      @Override
+      public long read(Buffer sink, long byteCount)
+          throws IOException
+      {
+        final long count = super.read(sink, byteCount);
+
+        if (count == -1)
+        {
+          release(priority, released);
+        }
+
+        return count;
+      }
+
+      @Override
+      public void close()
+          throws IOException
+      {
+        try
+        {
+          super.close();
+        }
+        finally
+        {
+          release(priority, released);
+        }
+      }
+    }));
+
+    return response.newBuilder().body(scheduledBody).build();
+  }
+
+  public int getCallsCount()
+  {
+    lock.lock();
+    try
+    {
+      return callsCount;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public int getWaitingCallsCount()
+  {
+    lock.lock();
+    try
+    {
+      return waiters.size();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  private void acquire(Priority priority, Deadline deadline)
+      throws InterruptedIOException
+  {
+    lock.lock();
+    try
+    {
+      final Waiter waiter = new Waiter(priority, System.currentTimeMillis() - priority.ordinal() * agingIntervalInMilliseconds, sequence++, lock.newCondition());
+      waiters.add(waiter);
+      dispatch();
+
+      try
+      {
+        while (waiter.granted == false)
+        {
+          if (deadline == null)
+          {
+            waiter.condition.await();
+          }
+          else if (deadline.isExpired() == true)
+          {
+            waiters.remove(waiter);
+            throw new Deadline.DeadlineExceededException();
+          }
+          else
+          {
+            waiter.condition.await(deadline.getRemainingInMilliseconds(), TimeUnit.MILLISECONDS);
+          }
+        }
+      }
+      catch (InterruptedException exception)
+      {
+        if (waiter.granted == true)
+        {
+          release(priority);
+        }
+        else
+        {
+          waiters.remove(waiter);
+        }
+
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a " + priority + " priority slot");
+      }
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  private void release(Priority priority, AtomicBoolean released)
+  {
+    if (released.compareAndSet(false, true) == true)
+    {
+      release(priority);
+    }
+  }
+
+  private void release(Priority priority)
+  {
+    lock.lock();
+    try
+    {
+      callsCount--;
+
+      if (priority == Priority.Low)
+      {
+        lowPriorityCallsCount--;
+      }
+
+      dispatch();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Grants the free slots to the waiting calls, in the order of their rank, the ones which may not use any of these slots being skipped.
+   */
+  private void dispatch()
+  {
+    final Iterator<Waiter> iterator = waiters.iterator();
+
+    while (iterator.hasNext() == true && callsCount < maximumCallsCount)
+    {
+      final Waiter waiter = iterator.next();
+
+      if (isEligible(waiter.priority) == true)
+      {
+        iterator.remove();
+        callsCount++;
+
+        if (waiter.priority == Priority.Low)
+        {
+          lowPriorityCallsCount++;
+        }
+
+        waiter.granted = true;
+        waiter.condition.signal();
+      }
+    }
+  }
+
+  private boolean isEligible(Priority priority)
+  {
+    switch (priority)
+    {
+      case High:
+        return callsCount < maximumCallsCount;
+      case Normal:
+        return callsCount < maximumCallsCount - highPriorityReservedCallsCount;
+      default:
+        return callsCount < maximumCallsCount - highPriorityReservedCallsCount && lowPriorityCallsCount < maximumLowPriorityCallsCount;
+    }
+  }
+
+}
@@ -0,0 +1,62 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+import com.smartnsoft.droid4me.ws.WebServiceClient.HttpResponse;
+
+/**
+ * The outcome of one of the requests run by the {@link OkHttpClientWebServiceCaller#runRequests(java.util.List, int, int)} method: either a
+ * response, or the exception the request failed with.
+ *
+ * @since 2026.10.17
+ */
+public final class RequestResult
+{
+
+  public final RequestSpec requestSpec;
+
+  /**
+   * The response of the request, or {@code null} if the request has failed.
+   */
+  public final HttpResponse httpResponse;
+
+  /**
+   * The reason why the request failed, or {@code null} if it has succeeded.
+   */
+  public final CallException exception;
+
+  RequestResult(RequestSpec requestSpec, HttpResponse httpResponse, CallException exception)
+  {
+    this.requestSpec = requestSpec;
+    this.httpResponse = httpResponse;
+    this.exception = exception;
+  }
+
+  public boolean isSuccessful()
+  {
+    return exception == null;
+  }
+
+}
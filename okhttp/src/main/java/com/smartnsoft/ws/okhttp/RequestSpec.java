@@ -0,0 +1,72 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.util.List;
+import java.util.Map;
+
+import com.smartnsoft.droid4me.ws.WebServiceCaller.MultipartFile;
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallType;
+
+/**
+ * Describes one of the requests run by the {@link OkHttpClientWebServiceCaller#runRequests(List, int, int)} method. Its fields are the parameters of
+ * the {@link OkHttpClientWebServiceCaller#runRequest(String, CallType, Map, Map, String, List)} method.
+ *
+ * @since 2026.10.17
+ */
+public final class RequestSpec
+{
+
+  public final String uri;
+
+  public final CallType callType;
+
+  public final Map<String, String> headers;
+
+  public final Map<String, String> parameters;
+
+  public final String body;
+
+  public final List<MultipartFile> files;
+
+  /**
+   * Describes an HTTP GET request with no specific header.
+   */
+  public RequestSpec(String uri)
+  {
+    this(uri, CallType.Get, null, null, null, null);
+  }
+
+  public RequestSpec(String uri, CallType callType, Map<String, String> headers, Map<String, String> parameters,
+      String body, List<MultipartFile> files)
+  {
+    this.uri = uri;
+    this.callType = callType;
+    this.headers = headers;
+    this.parameters = parameters;
+    this.body = body;
+    this.files = files;
+  }
+
+}
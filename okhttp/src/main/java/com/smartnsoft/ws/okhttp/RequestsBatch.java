@@ -0,0 +1,310 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException;
+import com.smartnsoft.droid4me.ws.WebServiceClient.HttpResponse;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Runs a batch of requests through the {@link OkHttpClientWebServiceCaller#runRequestAsync(String,
+ * com.smartnsoft.droid4me.ws.WebServiceClient.CallType, Map, Map, String, List, OkHttpClientWebServiceCaller.HttpResponseCallback)} method, while
+ * never running more than a given number of them at the same time, globally and per host.
+ *
+ * @since 2026.10.17
+ */
+final class RequestsBatch
+{
+
+  /**
+   * The requests of a same host.
+   */
+  private static final class HostRequests
+  {
+
+    /**
+     * The indices of the requests which have not been started yet, by order of submission.
+     */
+    private final ArrayDeque<Integer> pendingIndices = new ArrayDeque<>();
+
+    private int runningRequests;
+
+  }
+
+  /**
+   * Orders the hosts by their oldest pending request, so that the requests are started by order of submission.
+   */
+  private static final Comparator<HostRequests> OLDEST_PENDING_REQUEST_FIRST = new Comparator<HostRequests>()
+  {
+    @Override
+    public int compare(HostRequests hostRequests, HostRequests otherHostRequests)
+    {
+      return hostRequests.pendingIndices.peekFirst().compareTo(otherHostRequests.pendingIndices.peekFirst());
+    }
+  };
+
+  private final OkHttpClientWebServiceCaller webServiceCaller;
+
+  private final List<RequestSpec> requestSpecs;
+
+  private final int maximumRequests;
+
+  private final int maximumRequestsPerHost;
+
+  private final AtomicReferenceArray<RequestResult> results;
+
+  private final AtomicReferenceArray<HttpResponseFuture> futures;
+
+  private final CountDownLatch latch;
+
+  private final HostRequests[] hostRequestsByIndex;
+
+  /**
+   * The hosts which have pending requests and may run one more, so that a request is started without going through the requests of the busy
+   * hosts.
+   */
+  private final PriorityQueue<HostRequests> startableHosts = new PriorityQueue<>(11, RequestsBatch.OLDEST_PENDING_REQUEST_FIRST);
+
+  /**
+   * Makes sure that only one thread starts requests at a time, without recursing when a request fails right away.
+   */
+  private final AtomicInteger drainRequests = new AtomicInteger();
+
+  private int runningRequests;
+
+  private volatile boolean cancelled;
+
+  RequestsBatch(OkHttpClientWebServiceCaller webServiceCaller, List<RequestSpec> requestSpecs, int maximumRequests,
+      int maximumRequestsPerHost)
+  {
+    this.webServiceCaller = webServiceCaller;
+    this.requestSpecs = requestSpecs;
+    this.maximumRequests = Math.max(1, maximumRequests);
+    this.maximumRequestsPerHost = Math.max(1, maximumRequestsPerHost);
+    this.results = new AtomicReferenceArray<>(requestSpecs.size());
+    this.futures = new AtomicReferenceArray<>(requestSpecs.size());
+    this.latch = new CountDownLatch(requestSpecs.size());
+    this.hostRequestsByIndex = new HostRequests[requestSpecs.size()];
+
+    final Map<String, HostRequests> hostRequestsByHost = new HashMap<>();
+
+    for (int index = 0; index < requestSpecs.size(); index++)
+    {
+      final String host = getHost(requestSpecs.get(index));
+      HostRequests hostRequests = hostRequestsByHost.get(host);
+
+      if (hostRequests == null)
+      {
+        hostRequests = new HostRequests();
+        hostRequestsByHost.put(host, hostRequests);
+      }
+
+      hostRequests.pendingIndices.add(index);
+      hostRequestsByIndex[index] = hostRequests;
+    }
+
+    startableHosts.addAll(hostRequestsByHost.values());
+  }
+
+  List<RequestResult> run()
+      throws CallException
+  {
+    startRequests();
+
+    try
+    {
+      latch.await();
+    }
+    catch (InterruptedException exception)
+    {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new CallException(exception);
+    }
+
+    final List<RequestResult> resultsList = new ArrayList<>(results.length());
+
+    for (int index = 0; index < results.length(); index++)
+    {
+      resultsList.add(results.get(index));
+    }
+
+    return resultsList;
+  }
+
+  private void cancel()
+  {
+    cancelled = true;
+
+    synchronized (this)
+    {
+      startableHosts.clear();
+    }
+
+    for (int index = 0; index < futures.length(); index++)
+    {
+      final HttpResponseFuture future = futures.get(index);
+
+      if (future != null)
+      {
+        future.cancel(true);
+      }
+
+      // The responses received so far will never be handed over, hence they are released here
+      close(results.get(index));
+    }
+  }
+
+  private void startRequests()
+  {
+    if (drainRequests.getAndIncrement() != 0)
+    {
+      return;
+    }
+
+    int missed = 1;
+
+    do
+    {
+      final List<Integer> startableIndices = pollStartableIndices();
+
+      for (final Integer index : startableIndices)
+      {
+        startRequest(index);
+      }
+
+      missed = drainRequests.addAndGet(-missed);
+    }
+    while (missed != 0);
+  }
+
+  private synchronized List<Integer> pollStartableIndices()
+  {
+    final List<Integer> startableIndices = new ArrayList<>();
+
+    while (runningRequests < maximumRequests && startableHosts.isEmpty() == false)
+    {
+      final HostRequests hostRequests = startableHosts.poll();
+
+      startableIndices.add(hostRequests.pendingIndices.pollFirst());
+      runningRequests++;
+      hostRequests.runningRequests++;
+
+      if (hostRequests.pendingIndices.isEmpty() == false && hostRequests.runningRequests < maximumRequestsPerHost)
+      {
+        startableHosts.add(hostRequests);
+      }
+    }
+
+    return startableIndices;
+  }
+
+  private synchronized void releaseSlot(int index)
+  {
+    final HostRequests hostRequests = hostRequestsByIndex[index];
+
+    runningRequests--;
+
+    if (hostRequests.runningRequests-- == maximumRequestsPerHost && hostRequests.pendingIndices.isEmpty() == false && cancelled == false)
+    {
+      // The host was busy, hence not startable
+      startableHosts.add(hostRequests);
+    }
+  }
+
+  private void startRequest(final int index)
+  {
+    final RequestSpec requestSpec = requestSpecs.get(index);
+    final HttpResponseFuture future = webServiceCaller.runRequestAsync(requestSpec.uri, requestSpec.callType, requestSpec.headers, requestSpec.parameters, requestSpec.body, requestSpec.files, new OkHttpClientWebServiceCaller.HttpResponseCallback()
+    {
+      @Override
+      public void onResponse(String uri, HttpResponse httpResponse)
+      {
+        onRequestOver(index, new RequestResult(requestSpec, httpResponse, null));
+      }
+
+      @Override
+      public void onFailure(String uri, CallException exception)
+      {
+        onRequestOver(index, new RequestResult(requestSpec, null, exception));
+      }
+    });
+    futures.set(index, future);
+
+    if (cancelled == true)
+    {
+      // The batch has been cancelled while the request was being started
+      future.cancel(true);
+    }
+  }
+
+  private void onRequestOver(int index, RequestResult result)
+  {
+    results.set(index, result);
+
+    if (cancelled == true)
+    {
+      close(result);
+    }
+
+    releaseSlot(index);
+    latch.countDown();
+    startRequests();
+  }
+
+  private static void close(RequestResult result)
+  {
+    if (result != null && result.httpResponse != null && result.httpResponse.inputStream != null)
+    {
+      try
+      {
+        result.httpResponse.inputStream.close();
+      }
+      catch (IOException exception)
+      {
+        // Nothing to do: the response is discarded anyway
+      }
+    }
+  }
+
+  private static String getHost(RequestSpec requestSpec)
+  {
+    final HttpUrl url = requestSpec.uri == null ? null : HttpUrl.parse(requestSpec.uri);
+    return url == null ? "" : url.host();
+  }
+
+}
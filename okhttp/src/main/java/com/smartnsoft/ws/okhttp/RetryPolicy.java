@@ -0,0 +1,281 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallType;
+import com.smartnsoft.droid4me.ws.WebServiceClient.Verb;
+
+import okhttp3.Response;
+
+/**
+ * Decides whether and when a failed request should be run again, see {@link OkHttpClientWebServiceCaller#getRetryPolicy()}.
+ * <p>
+ * <p>
+ * By default, only the requests with an idempotent HTTP method are retried, when a connection issue occurred or when the server answered with a
+ * transient error status code, see {@link #isRetryableStatusCode(int)}. Before each retry, the policy waits for the delay requested by the
+ * {@code Retry-After} header of the response, or else for a random delay between zero and an exponentially growing backoff ("full jitter"),
+ * so that the clients do not retry all at the same time.
+ * </p>
+ * <p>
+ * <p>
+ * In order not to amplify an outage, each host has a retry budget: every retry spends a token of the budget, and every response which does not
+ * call for a retry gives back a fraction of a token. Once the budget of a host is exhausted, the requests to that host are not retried anymore
+ * until enough requests have succeeded.
+ * </p>
+ *
+ * @since 2026.10.17
+ */
+public class RetryPolicy
+{
+
+  public static final int DEFAULT_MAXIMUM_ATTEMPTS = 3;
+
+  public static final long DEFAULT_INITIAL_BACKOFF_IN_MILLISECONDS = 200;
+
+  public static final long DEFAULT_MAXIMUM_BACKOFF_IN_MILLISECONDS = 10 * 1000;
+
+  public static final int DEFAULT_RETRY_BUDGET = 10;
+
+  public static final double DEFAULT_RETRY_BUDGET_REFILL_RATIO = 0.1;
+
+  /**
+   * The retry budgets are stored in thousandths of token, so that they can be updated atomically.
+   */
+  private static final long TOKEN_UNIT = 1000;
+
+  /**
+   * The maximum number of attempts of a request, including its first attempt.
+   */
+  public final int maximumAttempts;
+
+  public final long initialBackoffInMilliseconds;
+
+  /**
+   * The maximum delay before a retry. When the {@code Retry-After} header of a response requests a longer delay, the request is not retried.
+   */
+  public final long maximumBackoffInMilliseconds;
+
+  /**
+   * The maximum number of tokens of the retry budget of each host.
+   */
+  public final int retryBudget;
+
+  /**
+   * The fraction of a token given back to the retry budget of a host by every response which does not call for a retry.
+   */
+  public final double retryBudgetRefillRatio;
+
+  private final ConcurrentMap<String, AtomicLong> retryBudgets = new ConcurrentHashMap<>();
+
+  public RetryPolicy()
+  {
+    this(RetryPolicy.DEFAULT_MAXIMUM_ATTEMPTS, RetryPolicy.DEFAULT_INITIAL_BACKOFF_IN_MILLISECONDS, RetryPolicy.DEFAULT_MAXIMUM_BACKOFF_IN_MILLISECONDS, RetryPolicy.DEFAULT_RETRY_BUDGET, RetryPolicy.DEFAULT_RETRY_BUDGET_REFILL_RATIO);
+  }
+
+  public RetryPolicy(int maximumAttempts, long initialBackoffInMilliseconds, long maximumBackoffInMilliseconds,
+      int retryBudget, double retryBudgetRefillRatio)
+  {
+    this.maximumAttempts = maximumAttempts;
+    this.initialBackoffInMilliseconds = initialBackoffInMilliseconds;
+    this.maximumBackoffInMilliseconds = maximumBackoffInMilliseconds;
+    this.retryBudget = retryBudget;
+    this.retryBudgetRefillRatio = retryBudgetRefillRatio;
+  }
+
+  /**
+   * Invoked every time a request has been attempted, in order to decide whether it should be run again.
+   *
+   * @param host          the host of the request
+   * @param callType      the HTTP method of the request
+   * @param attemptsCount the number of attempts that have been run so far. Starts at {@code 1}
+   * @param response      the response of the last attempt, or {@code null} if it failed with an exception
+   * @param exception     the exception the last attempt failed with, or {@code null} if a response has been received
+   * @return the delay in milliseconds to wait for before running the request again, or a negative value if it should not be retried
+   */
+  public long computeRetryDelayInMilliseconds(String host, CallType callType, int attemptsCount, Response response,
+      IOException exception)
+  {
+    if (response != null && isRetryableStatusCode(response.code()) == false)
+    {
+      refillRetryBudget(host);
+      return -1;
+    }
+
+    if (attemptsCount >= maximumAttempts || isRetryableVerb(callType.verb) == false)
+    {
+      return -1;
+    }
+
+    if (response == null && isRetryableException(exception) == false)
+    {
+      return -1;
+    }
+
+    final long delayInMilliseconds = computeBackoffInMilliseconds(attemptsCount, response);
+
+    if (delayInMilliseconds < 0 || spendRetryToken(host) == false)
+    {
+      return -1;
+    }
+
+    return delayInMilliseconds;
+  }
+
+  /**
+   * The default implementation returns {@code true} for the idempotent HTTP methods only, i.e. GET, HEAD, PUT and DELETE.
+   */
+  protected boolean isRetryableVerb(Verb verb)
+  {
+    return verb == Verb.Get || verb == Verb.Head || verb == Verb.Put || verb == Verb.Delete;
+  }
+
+  /**
+   * The default implementation returns {@code true} for the 408, 429, 502, 503 and 504 status codes.
+   */
+  protected boolean isRetryableStatusCode(int statusCode)
+  {
+    return statusCode == 408 || statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+  }
+
+  /**
+   * The default implementation returns {@code true} for all the exceptions, except when the thread has been interrupted or the call cancelled.
+   */
+  protected boolean isRetryableException(IOException exception)
+  {
+    return exception instanceof InterruptedIOException == false || exception instanceof SocketTimeoutException == true;
+  }
+
+  /**
+   * @param retriesCount the number of the upcoming retry. Starts at {@code 1}
+   * @param response     the response which calls for a retry, or {@code null} if the request failed with an exception
+   * @return the delay before the retry, or a negative value if the request should not be retried
+   */
+  protected long computeBackoffInMilliseconds(int retriesCount, Response response)
+  {
+    final long retryAfterInMilliseconds = response == null ? -1 : parseRetryAfterInMilliseconds(response);
+
+    if (retryAfterInMilliseconds >= 0)
+    {
+      return retryAfterInMilliseconds <= maximumBackoffInMilliseconds ? retryAfterInMilliseconds : -1;
+    }
+
+    // The shift is bounded, so that the exponential backoff does not overflow
+    final long exponentialBackoff = initialBackoffInMilliseconds << Math.min(retriesCount - 1, 30);
+    final long backoff = exponentialBackoff < 0 ? maximumBackoffInMilliseconds : Math.min(maximumBackoffInMilliseconds, exponentialBackoff);
+
+    return (long) (Math.random() * backoff);
+  }
+
+  private long parseRetryAfterInMilliseconds(Response response)
+  {
+    final String retryAfter = response.header("Retry-After");
+
+    if (retryAfter == null)
+    {
+      return -1;
+    }
+
+    try
+    {
+      return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+    }
+    catch (NumberFormatException exception)
+    {
+      // The header is an HTTP date rather than a number of seconds
+      final Date date = response.headers().getDate("Retry-After");
+      return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+    }
+  }
+
+  private boolean spendRetryToken(String host)
+  {
+    final AtomicLong budget = getRetryBudget(host);
+
+    while (true)
+    {
+      final long tokens = budget.get();
+
+      if (tokens < RetryPolicy.TOKEN_UNIT)
+      {
+        return false;
+      }
+
+      if (budget.compareAndSet(tokens, tokens - RetryPolicy.TOKEN_UNIT) == true)
+      {
+        return true;
+      }
+    }
+  }
+
+  private void refillRetryBudget(String host)
+  {
+    final AtomicLong budget = retryBudgets.get(host);
+
+    if (budget == null)
+    {
+      // The budget of a host is full until a retry is spent
+      return;
+    }
+
+    final long maximumTokens = retryBudget * RetryPolicy.TOKEN_UNIT;
+    final long refill = (long) (retryBudgetRefillRatio * RetryPolicy.TOKEN_UNIT);
+
+    while (true)
+    {
+      final long tokens = budget.get();
+
+      if (tokens >= maximumTokens || budget.compareAndSet(tokens, Math.min(maximumTokens, tokens + refill)) == true)
+      {
+        return;
+      }
+    }
+  }
+
+  private AtomicLong getRetryBudget(String host)
+  {
+    AtomicLong budget = retryBudgets.get(host);
+
+    if (budget == null)
+    {
+      final AtomicLong newBudget = new AtomicLong(retryBudget * RetryPolicy.TOKEN_UNIT);
+      budget = retryBudgets.putIfAbsent(host, newBudget);
+
+      if (budget == null)
+      {
+        budget = newBudget;
+      }
+    }
+
+    return budget;
+  }
+
+}
@@ -0,0 +1,125 @@
+// The MIT License (MIT)
+//
+// Copyright (c) 2017 Smart&Soft
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+// SOFTWARE.
+
+
+package com.smartnsoft.ws.okhttp;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.Dispatcher;
+
+/**
+ * Gives access to the virtual threads of the JVM runtimes which provide them (Java 21 and above), without requiring the library to be compiled
+ * against such a runtime.
+ * <p>
+ * <p>
+ * A virtual thread does not hold a platform thread while it is blocked on I/O: hence, the blocking
+ * {@link OkHttpClientWebServiceCaller#runRequest(String, com.smartnsoft.droid4me.ws.WebServiceClient.CallType, java.util.Map, java.util.Map, String, java.util.List)}
+ * method may be invoked from thousands of them at the same time. Virtual threads are not available on Android.
+ * </p>
+ *
+ * @see OkHttpClientWebServiceCaller#isUsingVirtualThreads()
+ * @since 2026.10.17
+ */
+public final class VirtualThreads
+{
+
+  /**
+   * The {@code Executors.newVirtualThreadPerTaskExecutor()} method, resolved only once.
+   */
+  private static final class FactoryMethodHolder
+  {
+
+    private static final Method INSTANCE = findFactoryMethod();
+
+    private static Method findFactoryMethod()
+    {
+      try
+      {
+        return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      }
+      catch (NoSuchMethodException exception)
+      {
+        return null;
+      }
+    }
+
+  }
+
+  private VirtualThreads()
+  {
+  }
+
+  /**
+   * @return {@code true} if and only if the current runtime provides virtual threads
+   */
+  public static boolean isAvailable()
+  {
+    return FactoryMethodHolder.INSTANCE != null;
+  }
+
+  /**
+   * Creates an executor which starts a new virtual thread for each task, which is the way blocking web service calls should be run in order to
+   * benefit from virtual threads.
+   *
+   * @return a new executor, which should be shut down once it is not used anymore
+   * @throws UnsupportedOperationException if the current runtime does not provide virtual threads
+   * @see #isAvailable()
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor()
+  {
+    if (isAvailable() == false)
+    {
+      throw new UnsupportedOperationException("Virtual threads are not available on this runtime");
+    }
+
+    try
+    {
+      return (ExecutorService) FactoryMethodHolder.INSTANCE.invoke(null);
+    }
+    catch (IllegalAccessException exception)
+    {
+      throw new UnsupportedOperationException("Cannot create a virtual thread executor", exception);
+    }
+    catch (InvocationTargetException exception)
+    {
+      throw new UnsupportedOperationException("Cannot create a virtual thread executor", exception.getCause());
+    }
+  }
+
+  /**
+   * Creates a {@link Dispatcher} which runs the asynchronous calls on virtual threads. Its {@link Dispatcher#setMaxRequests(int)} and
+   * {@link Dispatcher#setMaxRequestsPerHost(int)} limits are the OkHttp default ones, and may be raised since a pending call does not cost a
+   * platform thread anymore.
+   *
+   * @return a new dispatcher
+   * @throws UnsupportedOperationException if the current runtime does not provide virtual threads
+   */
+  public static Dispatcher newDispatcher()
+  {
+    return new Dispatcher(newVirtualThreadPerTaskExecutor());
+  }
+
+}
@@ -66,3 +66,47 @@ interface Logger
   fun fatal(message: String, throwable: Throwable)
 
 }
+
+/**
+ * Logs the message provided by the given block, which is only invoked when the debug level is enabled: building a disabled message costs nothing.
+ */
+inline fun Logger.debug(message: () -> String)
+{
+  if (isDebugEnabled)
+  {
+    debug(message())
+  }
+}
+
+/**
+ * Logs the message provided by the given block, which is only invoked when the info level is enabled.
+ */
+inline fun Logger.info(message: () -> String)
+{
+  if (isInfoEnabled)
+  {
+    info(message())
+  }
+}
+
+/**
+ * Logs the message provided by the given block, which is only invoked when the warn level is enabled.
+ */
+inline fun Logger.warn(message: () -> String)
+{
+  if (isWarnEnabled)
+  {
+    warn(message())
+  }
+}
+
+/**
+ * Logs the message provided by the given block, which is only invoked when the error level is enabled.
+ */
+inline fun Logger.error(message: () -> String)
+{
+  if (isErrorEnabled)
+  {
+    error(message())
+  }
+}
@@ -27,6 +27,7 @@ package com.smartnsoft.logger
 // SOFTWARE.
 
 import android.util.Log
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * In order to have an entry point for the logging interface. Because, when we use the Android logger, there are problems during the unitary tests on
@@ -58,9 +59,6 @@ import android.util.Log
 object LoggerFactory
 {
 
-  // Used for a synchronization purpose.
-  private val synchronizationObject = Any()
-
   /**
    * Tunes the logging system verbosity. The `Logger#isXXXEnabled()` method return values will depend on this trigger level. Defaults to
    * `Log.WARN`.
@@ -74,14 +72,23 @@ object LoggerFactory
   var logLevel = android.util.Log.WARN
 
   /**
-   * Remembers internally which [Logger] implementation to use.
+   * Remembers the [LoggerFactory.LoggerConfigurator] that will be used to instantiate [Logger] instances. It is only set while the
+   * [loggerImplementation] is being decided, which publishes it safely.
    */
-  private var loggerImplementation: LoggerImplementation? = null
+  private var loggerConfigurator: LoggerConfigurator? = null
 
   /**
-   * Remembers the [LoggerFactory.LoggerConfigurator] that will be used to instantiate [Logger] instances.
+   * Remembers internally which [Logger] implementation to use: it is decided once, the first time a logger is requested.
    */
-  private var loggerConfigurator: LoggerConfigurator? = null
+  private val loggerImplementation: LoggerImplementation by lazy {
+    computeLoggerImplementation()
+  }
+
+  /**
+   * The loggers which have already been created, indexed by their class or category, so that getting a logger from a hot path neither locks
+   * nor allocates.
+   */
+  private val loggers = ConcurrentHashMap<Any, Logger>()
 
   /**
    * The interface that should be implemented through the `SmartConfigurator` class (with no package name, because of Android restriction), in
@@ -91,7 +98,7 @@ object LoggerFactory
   {
 
     /**
-     * The method will be invoked by the [LoggerFactory.getInstance] every time a logger needs to be created.
+     * The method will be invoked by the [LoggerFactory.getInstance] the first time a logger is requested for a given category.
      *
      * @param category the logger category, which is a common concept to the [android.util.Log], `java java.util.logging.Logging`, `Log4J`
      * libraries
@@ -101,7 +108,7 @@ object LoggerFactory
     fun getLogger(category: String?): Logger
 
     /**
-     * The method will be invoked by the [LoggerFactory.getInstance] every time a logger needs to be created.
+     * The method will be invoked by the [LoggerFactory.getInstance] the first time a logger is requested for a given class.
      *
      * @param theClass the logger category, which is a common concept to the [android.util.Log], `java.util.logging.Logging`, `Log4J`
      * libraries
@@ -122,66 +129,49 @@ object LoggerFactory
 
   /**
    * @param category the category used for logging
-   * @return a new instance of [Logger] implementation, holding the provided `category`
+   * @return the [Logger] implementation holding the provided `category`, which is shared by all the callers of the same category
    * @see .getInstance
    */
   fun getInstance(category: String): Logger
   {
-    return getInstance(category, null)
+    return loggers.getOrPut(category) { createInstance(category, null) }
   }
 
   /**
    * @param theClass the class used for computing the logging category
-   * @return a new instance of [Logger] implementation, holding the provided `category`
+   * @return the [Logger] implementation holding the provided `category`, which is shared by all the callers of the same class
    */
   fun getInstance(theClass: Class<*>): Logger
   {
-    return getInstance(null, theClass)
+    return loggers.getOrPut(theClass) { createInstance(null, theClass) }
   }
 
-  private fun getInstance(category: String?, theClass: Class<*>?): Logger
+  private fun computeLoggerImplementation(): LoggerImplementation
   {
-    synchronized(synchronizationObject) {
-      // We need to synchronize this part of the code
-      if (loggerImplementation == null)
-      {
-        // The logger implementation has not been decided yet
-        if (retrieveCustomLoggerInstance("SmartConfigurator") == false)
-        {
-          if (retrieveCustomLoggerInstance("com.smartnsoft.droid4me.SmartConfigurator") == false)
-          {
-            // This means that the project does not expose the class which enables to configure the logging system
-            if (System.getProperty("droid4me.logging", "true") == "false" == true)
-            {
-              loggerImplementation = LoggerFactory.LoggerImplementation.NativeLogger
-            }
-            else
-            {
-              loggerImplementation = LoggerFactory.LoggerImplementation.AndroidLogger
-            }
-          }
-        }
-        // The logger implementation has not been decided yet
-        val loggerConfiguratorClassFqn = "SmartConfigurator"
-        try
-        {
-          val loggerConfiguratorClass = Class.forName(loggerConfiguratorClassFqn)
-          loggerConfigurator = loggerConfiguratorClass.newInstance() as LoggerConfigurator
-          loggerImplementation = LoggerFactory.LoggerImplementation.Other
-        }
-        catch (exception: Exception)
-        {
-
-
-        }
-
-        if (logLevel >= android.util.Log.INFO)
-        {
-          Log.d("LoggerFactory", "Using the logger '" + loggerImplementation + "'")
-        }
-      }
+    val loggerImplementation = if (retrieveCustomLoggerInstance("SmartConfigurator") == true || retrieveCustomLoggerInstance("com.smartnsoft.droid4me.SmartConfigurator") == true)
+    {
+      LoggerFactory.LoggerImplementation.Other
     }
+    // This means that the project does not expose the class which enables to configure the logging system
+    else if (System.getProperty("droid4me.logging", "true") == "false" == true)
+    {
+      LoggerFactory.LoggerImplementation.NativeLogger
+    }
+    else
+    {
+      LoggerFactory.LoggerImplementation.AndroidLogger
+    }
+
+    if (logLevel >= android.util.Log.INFO)
+    {
+      Log.d("LoggerFactory", "Using the logger '" + loggerImplementation + "'")
+    }
+
+    return loggerImplementation
+  }
 
+  private fun createInstance(category: String?, theClass: Class<*>?): Logger
+  {
     when (loggerImplementation)
     {
       LoggerFactory.LoggerImplementation.Other         -> return if (theClass != null)
@@ -196,8 +186,6 @@ object LoggerFactory
           ?: AndroidLogger(category)
       LoggerFactory.LoggerImplementation.NativeLogger  -> return theClass?.let { NativeLogger(it) }
           ?: NativeLogger(category)
-      else                                                                   -> return theClass?.let { AndroidLogger(it) }
-          ?: AndroidLogger(category)
     }
   }
 
@@ -207,7 +195,6 @@ object LoggerFactory
     {
       val loggerConfiguratorClass = Class.forName(loggerConfiguratorClassFqn)
       loggerConfigurator = loggerConfiguratorClass.newInstance() as LoggerConfigurator
-      loggerImplementation = LoggerFactory.LoggerImplementation.Other
       return true
     }
     catch (rollbackException: Exception)
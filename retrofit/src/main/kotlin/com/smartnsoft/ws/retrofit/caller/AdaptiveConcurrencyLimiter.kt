@@ -0,0 +1,320 @@
+package com.smartnsoft.ws.retrofit.caller
+
+import com.smartnsoft.ws.okhttp.CircuitBreaker
+import com.smartnsoft.ws.okhttp.Deadline
+import okhttp3.Interceptor
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.ForwardingSource
+import okio.Okio
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * An [Interceptor] which bounds the number of the calls in flight to each host, and adapts that limit to the latency the host exhibits, see
+ * [RetrofitWebServiceCaller.setupConcurrencyLimiter].
+ *
+ * The limit follows an additive increase / multiplicative decrease scheme: it grows by one every time as many calls as the limit succeed without
+ * the host slowing down, and is multiplied by the [backoffRatio] when a call fails or when the smoothed latency exceeds [latencyTolerance] times
+ * the no-load latency of the host, i.e. the lowest latency observed lately, at most once every limit calls. When the limit is reached, the calls wait at most
+ * [maximumWaitInMilliseconds] for a call to be over, and fail with a [LimitExceededException] beyond that delay, or right away if already
+ * [maximumWaitingCallsCount] calls are waiting: the wait is also bounded by the [Deadline] of the call, if any. Hence the latency remains stable under overload, instead of the queues growing without limit.
+ * A call is in flight until its response body has been fully read or closed, and its latency is measured up to that moment, since it keeps
+ * using its connection until then.
+ *
+ * The [okhttp3.Dispatcher] also bounds the number of the asynchronous calls per host: in order for the limit to grow beyond its
+ * [okhttp3.Dispatcher.getMaxRequestsPerHost], setup a [okhttp3.Dispatcher] with a higher value.
+ */
+class AdaptiveConcurrencyLimiter
+@JvmOverloads
+constructor(val initialLimit: Int = DEFAULT_INITIAL_LIMIT,
+            val minimumLimit: Int = DEFAULT_MINIMUM_LIMIT,
+            val maximumLimit: Int = DEFAULT_MAXIMUM_LIMIT,
+            val backoffRatio: Double = DEFAULT_BACKOFF_RATIO,
+            val latencyTolerance: Double = DEFAULT_LATENCY_TOLERANCE,
+            val maximumWaitInMilliseconds: Long = DEFAULT_MAXIMUM_WAIT_IN_MILLISECONDS,
+            val maximumWaitingCallsCount: Int = DEFAULT_MAXIMUM_WAITING_CALLS_COUNT)
+  : Interceptor
+{
+
+  companion object
+  {
+
+    const val DEFAULT_INITIAL_LIMIT = 5
+
+    const val DEFAULT_MINIMUM_LIMIT = 1
+
+    const val DEFAULT_MAXIMUM_LIMIT = 64
+
+    const val DEFAULT_BACKOFF_RATIO = 0.9
+
+    const val DEFAULT_LATENCY_TOLERANCE = 2.0
+
+    const val DEFAULT_MAXIMUM_WAIT_IN_MILLISECONDS = 1000L                    // 1 second
+
+    const val DEFAULT_MAXIMUM_WAITING_CALLS_COUNT = 64
+
+    // The weight of a new sample in the smoothed latency
+    private const val LATENCY_SMOOTHING_FACTOR = 0.1
+
+    // The number of samples after which the no-load latency is measured again, since the host may have durably changed meanwhile
+    private const val NO_LOAD_LATENCY_SAMPLES_COUNT = 500
+
+  }
+
+  /**
+   * The exception the calls to a host fail with, when they cannot be run within the bounded wait.
+   */
+  class LimitExceededException(val host: String, val limit: Int)
+    : IOException("The concurrency limit of $limit calls of the host '$host' has been exceeded")
+
+  /**
+   * The limit of a host, and its calls in flight.
+   */
+  private inner class HostLimit
+  {
+
+    val lock = ReentrantLock()
+
+    private val available = lock.newCondition()
+
+    var limit = Math.min(Math.max(initialLimit, minimumLimit), maximumLimit).toDouble()
+      private set
+
+    var inFlightCallsCount = 0
+      private set
+
+    private var waitingCallsCount = 0
+
+    private var noLoadLatencyInMilliseconds = Long.MAX_VALUE
+
+    private var samplesCount = 0
+
+    private var smoothedLatencyInMilliseconds = -1.0
+
+    private var samplesSinceBackoffCount = 0
+
+    /**
+     * @return false if the call could not be run within the bounded wait.
+     * @throws Deadline.DeadlineExceededException if the deadline of the call has expired while waiting.
+     */
+    @Throws(InterruptedIOException::class)
+    fun tryAcquire(deadline: Deadline?): Boolean =
+        lock.withLock {
+          if (inFlightCallsCount < limit.toInt())
+          {
+            inFlightCallsCount++
+            return true
+          }
+
+          if (waitingCallsCount >= maximumWaitingCallsCount)
+          {
+            return false
+          }
+
+          waitingCallsCount++
+
+          try
+          {
+            val waitInMilliseconds = if (deadline == null) maximumWaitInMilliseconds else Math.min(maximumWaitInMilliseconds, deadline.remainingInMilliseconds)
+            var remainingNanoseconds = TimeUnit.MILLISECONDS.toNanos(waitInMilliseconds)
+
+            while (inFlightCallsCount >= limit.toInt())
+            {
+              if (remainingNanoseconds <= 0)
+              {
+                if (deadline?.isExpired == true)
+                {
+                  throw Deadline.DeadlineExceededException()
+                }
+
+                return false
+              }
+
+              remainingNanoseconds = available.awaitNanos(remainingNanoseconds)
+            }
+
+            inFlightCallsCount++
+            return true
+          }
+          catch (exception: InterruptedException)
+          {
+            Thread.currentThread().interrupt()
+            throw InterruptedIOException("Interrupted while waiting for the concurrency limit")
+          }
+          finally
+          {
+            waitingCallsCount--
+          }
+        }
+
+    /**
+     * @param[dropped] whether the call has failed, or null if its outcome should not be taken into account.
+     */
+    fun release(latencyInMilliseconds: Long, dropped: Boolean?)
+    {
+      lock.withLock {
+        val previousLimit = limit.toInt()
+        inFlightCallsCount--
+
+        if (dropped != null)
+        {
+          if (++samplesCount >= NO_LOAD_LATENCY_SAMPLES_COUNT)
+          {
+            samplesCount = 0
+            noLoadLatencyInMilliseconds = Long.MAX_VALUE
+          }
+
+          noLoadLatencyInMilliseconds = Math.min(noLoadLatencyInMilliseconds, latencyInMilliseconds)
+          smoothedLatencyInMilliseconds = if (smoothedLatencyInMilliseconds < 0) latencyInMilliseconds.toDouble() else smoothedLatencyInMilliseconds * (1 - LATENCY_SMOOTHING_FACTOR) + latencyInMilliseconds * LATENCY_SMOOTHING_FACTOR
+          samplesSinceBackoffCount++
+
+          if (dropped || smoothedLatencyInMilliseconds > Math.max(1L, noLoadLatencyInMilliseconds) * latencyTolerance)
+          {
+            // The calls which were in flight when the limit decreased tell nothing more
+            if (samplesSinceBackoffCount >= limit)
+            {
+              limit = Math.max(minimumLimit.toDouble(), limit * backoffRatio)
+              samplesSinceBackoffCount = 0
+            }
+          }
+          else if ((inFlightCallsCount + 1) * 2 >= limit)
+          {
+            // The limit only grows while it is actually used, this call included
+            limit = Math.min(maximumLimit.toDouble(), limit + 1 / limit)
+          }
+        }
+
+        if (limit.toInt() > previousLimit)
+        {
+          available.signalAll()
+        }
+        else
+        {
+          available.signal()
+        }
+      }
+    }
+
+  }
+
+  private val hostLimits = ConcurrentHashMap<String, HostLimit>()
+
+  /**
+   * @return the current number of calls the host may run at the same time.
+   */
+  fun getLimit(host: String): Int =
+      getHostLimit(host).let { hostLimit -> hostLimit.lock.withLock { hostLimit.limit.toInt() } }
+
+  fun getInFlightCallsCount(host: String): Int =
+      getHostLimit(host).let { hostLimit -> hostLimit.lock.withLock { hostLimit.inFlightCallsCount } }
+
+  override fun intercept(chain: Interceptor.Chain): Response
+  {
+    val request = chain.request()
+
+    if (request.cacheControl().onlyIfCached())
+    {
+      return chain.proceed(request)
+    }
+
+    val host = request.url().host()
+    val hostLimit = getHostLimit(host)
+
+    if (hostLimit.tryAcquire(request.tag(Deadline::class.java)).not())
+    {
+      throw LimitExceededException(host, getLimit(host))
+    }
+
+    val start = System.currentTimeMillis()
+    val response: Response
+
+    try
+    {
+      response = chain.proceed(request)
+    }
+    catch (exception: IOException)
+    {
+      // Neither the cancelled calls, nor the ones an open circuit breaker rejected, nor the ones whose deadline had expired tell anything about the
+      // host latency
+      val ignored = chain.call().isCanceled || exception is CircuitBreaker.CircuitOpenException || exception is Deadline.DeadlineExceededException
+      hostLimit.release(System.currentTimeMillis() - start, if (ignored) null else true)
+      throw exception
+    }
+    catch (throwable: Throwable)
+    {
+      hostLimit.release(System.currentTimeMillis() - start, null)
+      throw throwable
+    }
+
+    val dropped = response.code() >= 500
+    val body = response.body()
+
+    if (body == null)
+    {
+      hostLimit.release(System.currentTimeMillis() - start, dropped)
+      return response
+    }
+
+    // The call is in flight until its response body has been fully read or closed, and its latency includes the transfer of the body
+    val released = AtomicBoolean()
+
+    fun release(dropped: Boolean?)
+    {
+      if (released.compareAndSet(false, true))
+      {
+        hostLimit.release(System.currentTimeMillis() - start, dropped)
+      }
+    }
+
+    val limitedBody = ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(object : ForwardingSource(body.source())
+    {
+
+      override fun read(sink: Buffer, byteCount: Long): Long =
+          try
+          {
+            super.read(sink, byteCount).also { count ->
+              if (count == -1L)
+              {
+                release(dropped)
+              }
+            }
+          }
+          catch (exception: IOException)
+          {
+            release(if (chain.call().isCanceled) null else true)
+            throw exception
+          }
+
+      override fun close()
+      {
+        try
+        {
+          super.close()
+        }
+        finally
+        {
+          release(dropped)
+        }
+      }
+    }))
+
+    return response.newBuilder().body(limitedBody).build()
+  }
+
+  private fun getHostLimit(host: String): HostLimit =
+      hostLimits[host] ?: HostLimit().let { hostLimit ->
+        hostLimits.putIfAbsent(host, hostLimit) ?: hostLimit
+      }
+
+}
@@ -1,8 +1,11 @@
 package com.smartnsoft.ws.retrofit.caller
 
 import android.support.annotation.WorkerThread
+import com.smartnsoft.logger.debug
+import com.smartnsoft.logger.warn
 import com.smartnsoft.ws.exception.CallException
 import com.smartnsoft.ws.exception.JacksonExceptions
+import com.smartnsoft.ws.okhttp.Deadline
 import com.smartnsoft.ws.retrofit.api.AuthProvider
 import com.smartnsoft.ws.retrofit.api.AuthAPI
 import com.smartnsoft.ws.retrofit.bo.AccessToken
@@ -14,6 +17,7 @@ import retrofit2.Call
 import retrofit2.Retrofit
 import java.io.IOException
 import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
 
 /**
  * @author Anthony Msihid
@@ -57,6 +61,15 @@ constructor(private val authProvider: AuthProvider,
     {
       var callException: CallException? = null
 
+      val deadline = response.request().tag(Deadline::class.java)
+
+      // There is no time left for refreshing the token and replaying the call
+      if (deadline?.isExpired == true)
+      {
+        log.debug { "Not refreshing the token, since the deadline of the call has expired" }
+        return null
+      }
+
       authProvider.apply {
         val accessToken = getAccessToken()
 
@@ -65,7 +78,7 @@ constructor(private val authProvider: AuthProvider,
         {
           val accessTokenResponse = try
           {
-            executeAuth(authService?.refreshToken("${getBaseRoute()}${getRefreshEndpoint()}", accessToken.refreshToken))
+            executeAuth(authService?.refreshToken("${getBaseRoute()}${getRefreshEndpoint()}", accessToken.refreshToken), deadline)
           }
           catch (exception: Exception)
           {
@@ -75,7 +88,7 @@ constructor(private val authProvider: AuthProvider,
 
           if (accessTokenResponse?.successResponse != null)
           {
-            debug("Token refreshed, new token is: ${accessTokenResponse.successResponse.accessToken}")
+            log.debug { "Token refreshed, new token is: ${accessTokenResponse.successResponse.accessToken}" }
 
             setAccessToken(accessTokenResponse.successResponse)
 
@@ -93,7 +106,7 @@ constructor(private val authProvider: AuthProvider,
           }
           else if (accessTokenResponse?.errorResponse != null)
           {
-            warn("Call of refresh token http status is '${accessTokenResponse.errorResponse.statusCode}' with message: '${accessTokenResponse.errorResponse.message}'")
+            log.warn { "Call of refresh token http status is '${accessTokenResponse.errorResponse.statusCode}' with message: '${accessTokenResponse.errorResponse.message}'" }
 
             if (accessTokenResponse.errorResponse.statusCode == 401 || accessTokenResponse.errorResponse.statusCode == 403)
             {
@@ -196,6 +209,26 @@ constructor(private val authProvider: AuthProvider,
     return responseWithError
   }
 
+  /**
+   * Also connects to the [AuthProvider.getBaseRoute] of the authentication calls, whose [OkHttpClient] has its own connection pool.
+   */
+  override fun prewarm()
+  {
+    super.prewarm()
+
+    thread(isDaemon = true, name = "${javaClass.simpleName}-auth-prewarm") {
+      try
+      {
+        authService
+        prewarm(httpAuthClient, authProvider.getBaseRoute())
+      }
+      catch (exception: Exception)
+      {
+        warn("Could not prewarm the connection to '${authProvider.getBaseRoute()}': ${exception.message}")
+      }
+    }
+  }
+
   final override fun setupAuthenticator(): Authenticator?
   {
     return TokenAuthenticatorInterceptor()
@@ -254,15 +287,22 @@ constructor(private val authProvider: AuthProvider,
 
   @WorkerThread
   @Throws(IOException::class, JacksonExceptions.JacksonParsingException::class, CallException::class, CacheException::class, Exception::class)
-  private fun executeAuth(call: Call<AccessToken>?): ResponseWithError<AccessToken, ErrorResponse>?
+  private fun executeAuth(call: Call<AccessToken>?, deadline: Deadline? = null): ResponseWithError<AccessToken, ErrorResponse>?
   {
     call?.request()?.let { request ->
-      debug("Starting execution of auth call ${request.method()} to ${request.url()}")
+      log.debug { "Starting execution of auth call ${request.method()} to ${request.url()}" }
 
       val newRequest = request.newBuilder().build()
-      val response: Response? = httpAuthClient.newCall(newRequest).execute()
+      val authCall = httpAuthClient.newCall(newRequest)
+
+      // The refresh of the token may not outlast the call which triggered it
+      deadline?.remainingInMilliseconds?.also { remainingInMilliseconds ->
+        authCall.timeout().timeout(Math.max(1, remainingInMilliseconds), TimeUnit.MILLISECONDS)
+      }
+
+      val response: Response? = authCall.execute()
       val success = response?.isSuccessful
-      val responseBody = response?.peekBody(Long.MAX_VALUE)?.string()
+      val responseBody = response?.body()?.string()
 
       return if (success == true)
       {
@@ -9,6 +9,14 @@ import com.smartnsoft.ws.retrofit.caller.RetrofitWebServiceCaller.FetchPolicyTyp
 import com.smartnsoft.ws.retrofit.bo.ResponseWithError
 import com.smartnsoft.logger.Logger
 import com.smartnsoft.logger.LoggerFactory
+import com.smartnsoft.logger.debug
+import com.smartnsoft.ws.okhttp.CachingDns
+import com.smartnsoft.ws.okhttp.CallGroup
+import com.smartnsoft.ws.okhttp.CircuitBreaker
+import com.smartnsoft.ws.okhttp.ConnectionMetrics
+import com.smartnsoft.ws.okhttp.Deadline
+import com.smartnsoft.ws.okhttp.PriorityScheduler
+import com.smartnsoft.ws.okhttp.VirtualThreads
 import okhttp3.*
 import retrofit2.Call
 import retrofit2.Converter
@@ -19,7 +27,9 @@ import java.net.URI
 import java.net.URISyntaxException
 import java.util.*
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.collections.ArrayList
+import kotlin.concurrent.thread
 
 /**
  *
@@ -132,6 +142,11 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
    * @param[allowedTimeExpiredCacheInSeconds] time in seconds you allow the cached [Response] to be valid after its expiration (= maxStale).
    * @param[useClientDateForCache] if true, override the date of the [Response] with the client date. Useful if the server time is misconfigured.
    * @param[customKey] use this if you want to store the [Response] with a custom key in [Cache] (rather than its url, used by default).
+   * @param[priority] the priority of the [Call], only taken into account when a [PriorityScheduler] is setup, see [setupPriorityScheduler].
+   * @param[deadlineInMilliseconds] the time budget of the [Call] from its execution, across all its attempts, the time spent waiting for the
+   * [PriorityScheduler] and the [AdaptiveConcurrencyLimiter] included. The timeouts of each attempt are shrunk to the remaining budget; once it
+   * is exhausted, the [NETWORK_THEN_CACHE] calls go straight to the cache and the other ones fail.
+   * @param[callGroup] the group the [Call] belongs to, so that it may be cancelled along with the other calls of the same screen or job, see [CallGroup.cancelAll].
    *
    */
   inner class CachePolicy
@@ -141,7 +156,10 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
               val cacheRetentionPolicyInSeconds: Int? = builtInCache?.defaultCacheRetentionTimeInSeconds,
               val allowedTimeExpiredCacheInSeconds: Int? = builtInCache?.defaultAllowedTimeExpiredCacheInSeconds,
               val useClientDateForCache: Boolean = builtInCache?.defaultUseClientDateForCache ?: true,
-              val customKey: String? = null)
+              val customKey: String? = null,
+              val priority: PriorityScheduler.Priority = PriorityScheduler.Priority.Normal,
+              val deadlineInMilliseconds: Long? = null,
+              val callGroup: CallGroup? = null)
 
   // This class is instantiated only once and does not leak as RetrofitWebServiceCaller is a Singleton.
   // So it is OK to declare it `inner`, to pass the `isConnected` boolean.
@@ -172,6 +190,28 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
       if (fetchPolicyType != null)
       {
         val request = buildRequest(chain.request(), cachePolicy)
+
+        val deadline = chain.request().tag(Deadline::class.java)
+
+        // Goes straight to the cache if the host is known to be failing, or if there is no time left for the network
+        if (fetchPolicyType == FetchPolicyType.NETWORK_THEN_CACHE && (circuitBreaker?.getState(originalRequestUrl.host()) == CircuitBreaker.State.Open || deadline?.isExpired == true))
+        {
+          log.debug { "Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} skips the network because ${if (deadline?.isExpired == true) "its deadline has expired" else "the circuit breaker of its host is open"}. Trying call to cache." }
+
+          chain.proceed(buildCacheRequest(request, cachePolicy)).also { cacheTry ->
+            return if (cacheTry.code() == ONLY_CACHE_UNSATISFIABLE_ERROR_CODE)
+            {
+              log.debug { "Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Failing." }
+
+              onStatusCodeNotOk(cacheTry)
+            }
+            else
+            {
+              cacheTry
+            }
+          }
+        }
+
         var firstTry: Response? = null
         var firstException: Exception? = null
 
@@ -185,8 +225,7 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
         {
           firstException = exception
 
-          val errorMessage = "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed."
-          debug(errorMessage)
+          log.debug { "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed." }
 
           shouldDoSecondCall(firstTry, exception)
         }
@@ -196,8 +235,7 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
         {
           if (fetchPolicyType == FetchPolicyType.ONLY_NETWORK)
           {
-            val errorMessage = "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed because the network is not connected."
-            debug(errorMessage)
+            log.debug { "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed because the network is not connected." }
 
             return onStatusCodeNotOk(firstTry, firstException)
           }
@@ -208,40 +246,55 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
         {
           (firstTry == null || firstTry.code() == ONLY_CACHE_UNSATISFIABLE_ERROR_CODE) && fetchPolicyType == FetchPolicyType.CACHE_THEN_NETWORK ->
           {
-            debug("Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Trying call to network.")
+            log.debug { "Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Trying call to network." }
 
             // Fails fast if the connectivity is known to be lost
             if (hasConnectivity().not())
             {
-              val errorMessage = "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed because the network is not connected."
-              debug(errorMessage)
+              log.debug { "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed because the network is not connected." }
 
               return onStatusCodeNotOk(firstTry, firstException)
             }
 
+            // Fails fast if the host is known to be failing
+            if (circuitBreaker?.getState(originalRequestUrl.host()) == CircuitBreaker.State.Open)
+            {
+              log.debug { "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed because the circuit breaker of its host is open." }
+
+              return onStatusCodeNotOk(firstTry, CircuitBreaker.CircuitOpenException(originalRequestUrl.host()))
+            }
+
+            // Fails fast if there is no time left for the network
+            if (deadline?.isExpired == true)
+            {
+              log.debug { "Call of ${chain.request().method()} to ${chain.request().url()} with cache policy ${fetchPolicyType.name} failed because its deadline has expired." }
+
+              return onStatusCodeNotOk(firstTry, Deadline.DeadlineExceededException())
+            }
+
             secondRequest = buildNetworkRequest(request, cachePolicy, originalRequestUrl)
           }
           (firstTry == null || firstTry.isSuccessful.not()) && fetchPolicyType == FetchPolicyType.NETWORK_THEN_CACHE                            ->
           {
-            debug("Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a network response. Trying call to cache.")
+            log.debug { "Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a network response. Trying call to cache." }
 
             secondRequest = buildCacheRequest(request, cachePolicy)
           }
           (firstTry == null || firstTry.code() == ONLY_CACHE_UNSATISFIABLE_ERROR_CODE) && fetchPolicyType == FetchPolicyType.ONLY_CACHE         ->
           {
-            debug("Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Failing.")
+            log.debug { "Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Failing." }
 
             return onStatusCodeNotOk(firstTry, CacheException("Call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Failing."))
           }
           (firstTry == null || firstTry.isSuccessful.not())                                                                                     ->
           {
-            debug("Call of ${request.method()} to ${request.url()} with cache policy $fetchPolicyType failed to find a response. Failing.")
+            log.debug { "Call of ${request.method()} to ${request.url()} with cache policy $fetchPolicyType failed to find a response. Failing." }
 
             return onStatusCodeNotOk(firstTry, firstException)
           }
           else                                                                                                                                  ->
           {
-            debug("Call of ${firstTry.request().method()} to ${firstTry.request().url()} with cache policy $fetchPolicyType successful.")
+            log.debug { "Call of ${firstTry.request().method()} to ${firstTry.request().url()} with cache policy $fetchPolicyType successful." }
 
             return firstTry
           }
@@ -254,19 +307,19 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
             {
               fetchPolicyType == FetchPolicyType.NETWORK_THEN_CACHE && secondTry.code() == ONLY_CACHE_UNSATISFIABLE_ERROR_CODE ->
               {
-                debug("Second call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Failing.")
+                log.debug { "Second call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} failed to find a cached response. Failing." }
 
                 onStatusCodeNotOk(secondTry)
               }
               secondTry.isSuccessful.not()                                                                                     ->
               {
-                debug("Second call of ${secondTry.request().method()} to ${secondTry.request().url()} with cache policy ${fetchPolicyType.name} failed to find a network response. Failing.")
+                log.debug { "Second call of ${secondTry.request().method()} to ${secondTry.request().url()} with cache policy ${fetchPolicyType.name} failed to find a network response. Failing." }
 
                 onStatusCodeNotOk(secondTry)
               }
               else                                                                                                             ->
               {
-                debug("Second call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} was successful.")
+                log.debug { "Second call of ${request.method()} to ${request.url()} with cache policy ${fetchPolicyType.name} was successful." }
 
                 secondTry
               }
@@ -304,14 +357,6 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
       }
     }
 
-    private fun debug(message: String)
-    {
-      if (log.isDebugEnabled)
-      {
-        log.debug(message)
-      }
-    }
-
   }
 
   private inner class NetworkCacheInterceptor : Interceptor
@@ -331,6 +376,60 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
     }
   }
 
+  /**
+   * Fails the calls to the hosts whose circuit is open, and reports the outcome of the other ones to the [circuitBreaker]. It is an app
+   * interceptor, so that a failing host does not cost a connection time-out, which sees the network calls and the cache calls separately.
+   */
+  private inner class CircuitBreakerInterceptor(private val circuitBreaker: CircuitBreaker) : Interceptor
+  {
+
+    override fun intercept(chain: Interceptor.Chain): Response?
+    {
+      val request = chain.request()
+
+      if (request.cacheControl().onlyIfCached())
+      {
+        return chain.proceed(request)
+      }
+
+      val host = request.url().host()
+
+      if (circuitBreaker.tryAcquirePermission(host).not())
+      {
+        throw CircuitBreaker.CircuitOpenException(host)
+      }
+
+      val start = System.currentTimeMillis()
+      // Until the outcome is known, the call is held against the host, so that a throwable other than an I/O exception, raised by an interceptor
+      // for instance, does not leak the trial call of a half-open circuit
+      var failed = true
+      var canceled = false
+
+      try
+      {
+        return chain.proceed(request).also { response ->
+          failed = response.code() >= 500
+        }
+      }
+      catch (exception: IOException)
+      {
+        canceled = chain.call().isCanceled || Thread.currentThread().isInterrupted
+        throw exception
+      }
+      finally
+      {
+        if (canceled)
+        {
+          circuitBreaker.onCallCanceled(host)
+        }
+        else
+        {
+          circuitBreaker.onCallOver(host, failed, System.currentTimeMillis() - start)
+        }
+      }
+    }
+  }
+
   protected open val log: Logger by lazy {
     LoggerFactory.getInstance(RetrofitWebServiceCaller::class.java)
   }
@@ -352,9 +451,19 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
     computeHttpClient().build()
   }
 
+  private val circuitBreaker: CircuitBreaker? by lazy {
+    setupCircuitBreaker()
+  }
+
   private var isHttpClientInitialized = false
 
-  private var isConnected = true
+  /**
+   * Updated atomically, so that only one of concurrent [setConnectivity] invocations sees the connectivity coming back.
+   */
+  private val isConnected = AtomicBoolean(true)
+
+  @Volatile
+  private var isPrewarmRequested = false
 
   private var cacheDir: File? = null
 
@@ -367,11 +476,102 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
   abstract fun <T> mapResponseToObject(responseBody: String?, typeReference: TypeReference<T>): T?
 
   open fun hasConnectivity(): Boolean =
-      isConnected
+      isConnected.get()
 
   open fun setConnectivity(isConnected: Boolean)
   {
-    this.isConnected = isConnected
+    val wasConnected = this.isConnected.getAndSet(isConnected)
+
+    // The connections of the pool are most likely dead after an outage
+    if (isConnected && wasConnected.not() && isPrewarmRequested)
+    {
+      prewarm()
+    }
+  }
+
+  /**
+   * Builds the [service] and the [httpClient], and resolves the host of the [baseUrl] in the background, so that the first call does not pay for
+   * the DNS resolution. When [computePrewarmUrl] provides a url, it also connects to it, so that the first call does not pay for the TCP connection
+   * and the TLS handshake either: the warmed connection is parked in the connection pool of the [httpClient]. Once this method has been invoked, it
+   * is invoked again every time the connectivity comes back through [setConnectivity].
+   *
+   * Since the [httpClient] is built by this method, the cache must have been setup before, see [setupCache].
+   */
+  open fun prewarm()
+  {
+    isPrewarmRequested = true
+
+    thread(isDaemon = true, name = "${javaClass.simpleName}-prewarm") {
+      try
+      {
+        service
+        prewarm(httpClient, baseUrl)
+      }
+      catch (exception: Exception)
+      {
+        warn("Could not prewarm the connection to '$baseUrl': ${exception.message}")
+      }
+    }
+  }
+
+  /**
+   * Indicates which url of the host of the given base url the [prewarm] HEAD request should be sent to, so that warming a connection does not run
+   * any application logic: typically a health check endpoint.
+   *
+   * The default implementation returns `null`, in which case only the host name is resolved, and no connection is opened, since OkHttp cannot send
+   * a request which does not target a resource, like `OPTIONS *`.
+   */
+  open fun computePrewarmUrl(baseUrl: String): String? =
+      null
+
+  /**
+   * Resolves the host of the given url through the given [OkHttpClient], and connects to it in the background through a HEAD request to the
+   * [computePrewarmUrl] url, if any. The request skips the interceptors, the authenticator and the cache of the client, but shares its connection
+   * pool. Blocks while resolving the host name.
+   */
+  protected fun prewarm(okHttpClient: OkHttpClient, url: String)
+  {
+    if (hasConnectivity().not())
+    {
+      return
+    }
+
+    val baseHttpUrl = HttpUrl.parse(url) ?: run {
+      warn("Could not prewarm the connection to the malformed url '$url'")
+      return
+    }
+
+    okHttpClient.dns().lookup(baseHttpUrl.host())
+
+    val httpUrl = computePrewarmUrl(url)?.let { prewarmUrl -> baseHttpUrl.resolve(prewarmUrl) } ?: run {
+      log.debug { "Resolved the host '${baseHttpUrl.host()}'" }
+      return
+    }
+
+    val prewarmHttpClient = okHttpClient.newBuilder()
+        .apply {
+          interceptors().clear()
+          networkInterceptors().clear()
+        }
+        .cache(null)
+        .authenticator(Authenticator.NONE)
+        .build()
+
+    prewarmHttpClient.newCall(Request.Builder().url(httpUrl).head().build()).enqueue(object : Callback
+    {
+      override fun onResponse(call: okhttp3.Call, response: Response)
+      {
+        log.debug { "Prewarmed the connection to '${httpUrl.host()}'" }
+
+        // Releases the connection into the pool
+        response.close()
+      }
+
+      override fun onFailure(call: okhttp3.Call, exception: IOException)
+      {
+        log.debug { "Could not prewarm the connection to '${httpUrl.host()}': ${exception.message}" }
+      }
+    })
   }
 
   open fun computeHttpClient(): OkHttpClient.Builder
@@ -381,6 +581,30 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
         .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
         .writeTimeout(writeTimeout, TimeUnit.MILLISECONDS)
 
+    setupDispatcher()?.also { dispatcher ->
+      okHttpClientBuilder.dispatcher(dispatcher)
+    }
+
+    setupProtocols()?.also { protocols ->
+      okHttpClientBuilder.protocols(protocols)
+    }
+
+    setupPingIntervalInMilliseconds().takeIf { pingIntervalInMilliseconds -> pingIntervalInMilliseconds > 0 }?.also { pingIntervalInMilliseconds ->
+      okHttpClientBuilder.pingInterval(pingIntervalInMilliseconds, TimeUnit.MILLISECONDS)
+    }
+
+    setupConnectionMetrics()?.also { connectionMetrics ->
+      okHttpClientBuilder.eventListener(connectionMetrics)
+    }
+
+    setupDns()?.also { dns ->
+      okHttpClientBuilder.dns(dns)
+
+      HttpUrl.parse(baseUrl)?.host()?.also { host ->
+        (dns as? CachingDns)?.prefetch(host)
+      }
+    }
+
     setupAuthenticator()?.also { authenticator ->
       okHttpClientBuilder.authenticator(authenticator)
     }
@@ -407,16 +631,137 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
       okHttpClientBuilder.addInterceptor(AppCacheInterceptor(builtInCache.shouldReturnErrorResponse))
     }
 
+    setupPriorityScheduler()?.also { priorityScheduler ->
+      okHttpClientBuilder.addInterceptor(priorityScheduler)
+    }
+
+    // The concurrency limiter comes first, so that the calls it rejects are not held against their host by the circuit breaker
+    setupConcurrencyLimiter()?.also { concurrencyLimiter ->
+      okHttpClientBuilder.addInterceptor(concurrencyLimiter)
+    }
+
+    // Comes after the interceptors which make the calls wait, so that the time spent in their queues is taken from the budget of the attempt, and
+    // after the cache interceptor, so that the network and the cache tries are handled separately
+    okHttpClientBuilder.addInterceptor(Deadline.DeadlineInterceptor())
+
+    circuitBreaker?.also { circuitBreaker ->
+      okHttpClientBuilder.addInterceptor(CircuitBreakerInterceptor(circuitBreaker))
+    }
+
     cacheDir?.also { cacheDirectory ->
       cacheDirectory.setReadable(true)
       okHttpClientBuilder.cache(Cache(File(cacheDirectory, "${RetrofitWebServiceCaller.CACHE_BASE_PATH}$cachePathName"), cacheSize))
     }
 
+    // Comes first, so that a call is registered only once in its group
+    okHttpClientBuilder.interceptors().add(0, CallGroup.CallGroupInterceptor())
+
     isHttpClientInitialized = true
 
     return okHttpClientBuilder
   }
 
+  /**
+   * Override this method to setup the [Dispatcher] which runs the asynchronous calls of the [httpClient].
+   *
+   * On a JVM runtime which provides virtual threads, return [VirtualThreads.newDispatcher] in order to run them on virtual threads. The blocking
+   * `execute` methods are run on the calling thread: in order for them to benefit from virtual threads, invoke them from an executor returned by
+   * [VirtualThreads.newVirtualThreadPerTaskExecutor].
+   *
+   * @return the [Dispatcher] that the [httpClient] builder will use, or null to use a default one.
+   */
+  open fun setupDispatcher(): Dispatcher?
+  {
+    return null
+  }
+
+  /**
+   * Override this method to setup the protocols the [httpClient] may use. HTTP/2 multiplexes all the calls to a host onto a single connection, and
+   * is negotiated through TLS. The [Protocol.H2_PRIOR_KNOWLEDGE] protocol, which must be the only one of the list, sends HTTP/2 in clear text
+   * without any negotiation, which is suited to the local services known to support it.
+   *
+   * The [Dispatcher] still bounds the number of the asynchronous calls per host: in order for more calls to be multiplexed, setup a [Dispatcher]
+   * with a higher [Dispatcher.getMaxRequestsPerHost], see [setupDispatcher].
+   *
+   * @return the protocols that the [httpClient] builder will use, or null to negotiate HTTP/2 and HTTP/1.1.
+   */
+  open fun setupProtocols(): List<Protocol>?
+  {
+    return null
+  }
+
+  /**
+   * Override this method to ping the HTTP/2 connections of the [httpClient], so that the idle ones are kept alive by the network equipments, and the
+   * dead ones are detected before a call is sent on them.
+   *
+   * @return the interval in milliseconds between two pings, or 0 if the connections should not be pinged.
+   */
+  open fun setupPingIntervalInMilliseconds(): Long
+  {
+    return 0
+  }
+
+  /**
+   * Override this method to measure how the calls of the [httpClient] are spread over its connections, and in particular how many streams each
+   * HTTP/2 connection carries.
+   *
+   * @return the [ConnectionMetrics] that the [httpClient] builder will use as its [EventListener], or null if no metrics should be gathered.
+   */
+  open fun setupConnectionMetrics(): ConnectionMetrics?
+  {
+    return null
+  }
+
+  /**
+   * Override this method to setup the [Dns] which resolves the host names of the [httpClient]. A [CachingDns] spares most of the calls the latency
+   * of the resolution: the host of the [baseUrl] is then prefetched as soon as the [httpClient] is built.
+   *
+   * @return the [Dns] that the [httpClient] builder will use, or null to use the system resolver.
+   */
+  open fun setupDns(): Dns?
+  {
+    return null
+  }
+
+  /**
+   * Override this method to setup a [CircuitBreaker], so that the calls to a host which keeps failing, or which has become too slow, fail
+   * immediately with a [CircuitBreaker.CircuitOpenException] instead of waiting for a time-out, until the host recovers. A call is considered as
+   * failed when it throws an [IOException] or when its response has a server error status code.
+   *
+   * While the circuit of a host is open, the [NETWORK_THEN_CACHE] calls go straight to the cache, and the [CACHE_THEN_NETWORK] calls fail when no
+   * cached response is found.
+   *
+   * This method is invoked only once.
+   *
+   * @return the [CircuitBreaker] that the [httpClient] will use, or null if the calls should always be attempted.
+   */
+  open fun setupCircuitBreaker(): CircuitBreaker?
+  {
+    return null
+  }
+
+  /**
+   * Override this method to setup a [PriorityScheduler], so that the calls are run according to the [CachePolicy.priority], and the background
+   * calls do not delay the ones the user is waiting on.
+   *
+   * @return the [PriorityScheduler] that the [httpClient] builder will use, or null if the calls should be run in the order of their submission.
+   */
+  open fun setupPriorityScheduler(): PriorityScheduler?
+  {
+    return null
+  }
+
+  /**
+   * Override this method to setup an [AdaptiveConcurrencyLimiter], so that the number of the calls in flight to each host adapts to its latency,
+   * the excess calls waiting a bounded time before failing with an [AdaptiveConcurrencyLimiter.LimitExceededException].
+   *
+   * @return the [AdaptiveConcurrencyLimiter] that the [httpClient] builder will use, or null if the calls should not be limited.
+   */
+  open fun setupConcurrencyLimiter(): AdaptiveConcurrencyLimiter?
+  {
+    return null
+  }
+
   /**
    * Override this method to setup an [Authenticator].
    *
@@ -616,10 +961,9 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
   protected fun <T> executeResponse(call: Call<T>?, cachePolicy: CachePolicy = CachePolicy()): Response?
   {
     call?.request()?.let { request ->
-      debug("Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}")
+      log.debug { "Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}" }
 
-      val newRequest = request.newBuilder().tag(if (builtInCache != null) cachePolicy else null).build()
-      val response: Response? = httpClient.newCall(newRequest).execute()
+      val response: Response? = httpClient.newCall(request.withCachePolicy(cachePolicy, builtInCache)).execute()
 
       response?.peekBody(Long.MAX_VALUE)?.close()
 
@@ -633,11 +977,10 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
   protected fun <T> execute(clazz: Class<T>, call: Call<T>?, cachePolicy: CachePolicy = CachePolicy()): T?
   {
     call?.request()?.let { request ->
-      debug("Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}")
+      log.debug { "Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}" }
 
-      val newRequest = request.newBuilder().tag(if (builtInCache != null) cachePolicy else null).build()
-      val response: Response? = httpClient.newCall(newRequest).execute()
-      val responseBody = response?.peekBody(Long.MAX_VALUE)?.string()
+      val response: Response? = httpClient.newCall(request.withCachePolicy(cachePolicy, builtInCache)).execute()
+      val responseBody = response?.body()?.string()
 
       return mapResponseToObject(responseBody, clazz)
     } ?: return null
@@ -649,12 +992,11 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
   protected fun <SuccessClass, ErrorClass> executeWithErrorResponse(clazz: Class<SuccessClass>, call: Call<SuccessClass>?, errorClazz: Class<ErrorClass>, cachePolicy: CachePolicy = CachePolicy()): ResponseWithError<SuccessClass, ErrorClass>?
   {
     call?.request()?.let { request ->
-      debug("Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}")
+      log.debug { "Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}" }
 
-      val newRequest = request.newBuilder().tag(if (builtInCache != null) cachePolicy else null).build()
-      val response: Response? = httpClient.newCall(newRequest).execute()
+      val response: Response? = httpClient.newCall(request.withCachePolicy(cachePolicy, builtInCache)).execute()
       val success = response?.isSuccessful
-      val responseBody = response?.peekBody(Long.MAX_VALUE)?.string()
+      val responseBody = response?.body()?.string()
 
       return if (success == true)
       {
@@ -673,11 +1015,10 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
   protected fun <T> execute(typeReference: TypeReference<T>, call: Call<T>?, cachePolicy: CachePolicy = CachePolicy()): T?
   {
     call?.request()?.let { request ->
-      debug("Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}")
+      log.debug { "Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}" }
 
-      val newRequest = request.newBuilder().tag(if (builtInCache != null) cachePolicy else null).build()
-      val response: Response? = httpClient.newCall(newRequest).execute()
-      val responseBody = response?.peekBody(Long.MAX_VALUE)?.string()
+      val response: Response? = httpClient.newCall(request.withCachePolicy(cachePolicy, builtInCache)).execute()
+      val responseBody = response?.body()?.string()
 
       return mapResponseToObject(responseBody, typeReference)
     } ?: return null
@@ -689,12 +1030,11 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
   protected fun <SuccessClass, ErrorClass> executeWithErrorResponse(typeReference: TypeReference<SuccessClass>, call: Call<SuccessClass>?, errorClazz: Class<ErrorClass>, cachePolicy: CachePolicy = CachePolicy()): ResponseWithError<SuccessClass, ErrorClass>?
   {
     call?.request()?.let { request ->
-      debug("Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}")
+      log.debug { "Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}" }
 
-      val newRequest = request.newBuilder().tag(if (builtInCache != null) cachePolicy else null).build()
-      val response: Response? = httpClient.newCall(newRequest).execute()
+      val response: Response? = httpClient.newCall(request.withCachePolicy(cachePolicy, builtInCache)).execute()
       val success = response?.isSuccessful
-      val responseBody = response?.peekBody(Long.MAX_VALUE)?.string()
+      val responseBody = response?.body()?.string()
 
       return if (success == true)
       {
@@ -713,12 +1053,11 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
   protected fun <T> execute(call: Call<T>?, cachePolicy: CachePolicy = CachePolicy()): String?
   {
     call?.request()?.let { request ->
-      debug("Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}")
+      log.debug { "Starting execution of call ${request.method()} to ${request.url()} with cache policy ${cachePolicy.fetchPolicyType.name}" }
 
-      val newRequest = request.newBuilder().tag(if (builtInCache != null) cachePolicy else null).build()
-      val response: Response? = httpClient.newCall(newRequest).execute()
+      val response: Response? = httpClient.newCall(request.withCachePolicy(cachePolicy, builtInCache)).execute()
 
-      return response?.peekBody(Long.MAX_VALUE)?.string()
+      return response?.body()?.string()
     } ?: return null
   }
 
@@ -738,6 +1077,18 @@ abstract class RetrofitWebServiceCaller<API>(protected val api: Class<API>,
     }
   }
 
+  /**
+   * Tags the request with the cache policy, when the built-in cache is enabled, and with the priority, the deadline and the call group it
+   * states.
+   */
+  private fun Request.withCachePolicy(cachePolicy: CachePolicy, builtInCache: BuiltInCache?): Request =
+      newBuilder()
+          .tag(if (builtInCache != null) cachePolicy else null)
+          .tag(PriorityScheduler.Priority::class.java, cachePolicy.priority)
+          .tag(Deadline::class.java, cachePolicy.deadlineInMilliseconds?.let { deadlineInMilliseconds -> Deadline.after(deadlineInMilliseconds) })
+          .tag(CallGroup::class.java, cachePolicy.callGroup)
+          .build()
+
   private fun buildRequest(request: Request, cachePolicy: CachePolicy): Request
   {
     val newRequest = when (cachePolicy.fetchPolicyType)
@@ -0,0 +1,179 @@
+package test
+
+import com.smartnsoft.ws.retrofit.caller.AdaptiveConcurrencyLimiter
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks the additive increase / multiplicative decrease of the limit of the [AdaptiveConcurrencyLimiter], and that the calls which cannot run
+ * within the bounded wait are rejected, a call holding its slot until its response body is consumed.
+ */
+class AdaptiveConcurrencyLimiterTest
+{
+
+  companion object
+  {
+
+    private const val HOST = "localhost"
+
+    private const val SERVER_LATENCY_IN_MILLISECONDS = 20L
+  }
+
+  private lateinit var server: MockWebServer
+
+  @Before
+  fun setup()
+  {
+    server = MockWebServer()
+    server.dispatcher = object : Dispatcher()
+    {
+      override fun dispatch(request: RecordedRequest): MockResponse =
+          when (request.path)
+          {
+            "/error" -> MockResponse().setResponseCode(500)
+            "/slow"  -> MockResponse().setBody("slow").setHeadersDelay(1000, TimeUnit.MILLISECONDS)
+            else     -> MockResponse().setBody("ok").setHeadersDelay(SERVER_LATENCY_IN_MILLISECONDS, TimeUnit.MILLISECONDS)
+          }
+    }
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    server.shutdown()
+  }
+
+  @Test
+  fun successfulCalls_usingTheLimit_increaseIt()
+  {
+    // The latency tolerance is high, so that the scheduling of the test threads is not mistaken for a slow host
+    val limiter = AdaptiveConcurrencyLimiter(initialLimit = 2, maximumLimit = 10, latencyTolerance = 100.0)
+    val httpClient = OkHttpClient.Builder().addInterceptor(limiter).build()
+    val executor = Executors.newFixedThreadPool(4)
+
+    try
+    {
+      executor.invokeAll((1..80).map { Callable { call(httpClient, "/") } }).forEach { future ->
+        future.get()
+      }
+    }
+    finally
+    {
+      executor.shutdown()
+    }
+
+    assertTrue("The limit is ${limiter.getLimit(HOST)}", limiter.getLimit(HOST) > 2)
+    assertEquals(0, limiter.getInFlightCallsCount(HOST))
+  }
+
+  @Test
+  fun failedCalls_decreaseTheLimit()
+  {
+    val limiter = AdaptiveConcurrencyLimiter(initialLimit = 8, minimumLimit = 2, backoffRatio = 0.5)
+    val httpClient = OkHttpClient.Builder().addInterceptor(limiter).build()
+
+    // The limit is multiplied by the backoff ratio at most once every limit calls
+    repeat(8) {
+      call(httpClient, "/error")
+    }
+    assertEquals(4, limiter.getLimit(HOST))
+
+    repeat(4) {
+      call(httpClient, "/error")
+    }
+    assertEquals(2, limiter.getLimit(HOST))
+
+    // The limit never goes below its minimum
+    repeat(10) {
+      call(httpClient, "/error")
+    }
+    assertEquals(2, limiter.getLimit(HOST))
+  }
+
+  @Test
+  fun limitReached_afterTheMaximumWait_rejectsTheCall()
+  {
+    val limiter = AdaptiveConcurrencyLimiter(initialLimit = 1, maximumLimit = 1, maximumWaitInMilliseconds = 100)
+    val httpClient = OkHttpClient.Builder().addInterceptor(limiter).build()
+    val executor = Executors.newSingleThreadExecutor()
+
+    try
+    {
+      val slowCall = executor.submit { call(httpClient, "/slow") }
+      while (limiter.getInFlightCallsCount(HOST) == 0)
+      {
+        Thread.sleep(10)
+      }
+
+      val start = System.currentTimeMillis()
+
+      try
+      {
+        call(httpClient, "/")
+        throw AssertionError("The call should have been rejected")
+      }
+      catch (exception: AdaptiveConcurrencyLimiter.LimitExceededException)
+      {
+        assertTrue(System.currentTimeMillis() - start < 1000)
+      }
+
+      slowCall.get()
+    }
+    finally
+    {
+      executor.shutdown()
+    }
+
+    // The rejected call was never sent
+    assertEquals(1, server.requestCount)
+  }
+
+  @Test
+  fun call_holdsItsSlotUntilItsResponseBodyIsConsumed()
+  {
+    val limiter = AdaptiveConcurrencyLimiter(initialLimit = 1, maximumLimit = 1, maximumWaitInMilliseconds = 100)
+    val httpClient = OkHttpClient.Builder().addInterceptor(limiter).build()
+
+    val response = httpClient.newCall(Request.Builder().url(server.url("/")).build()).execute()
+    assertEquals(1, limiter.getInFlightCallsCount(HOST))
+
+    // The slot is still held while the body is open, hence a second call cannot run
+    try
+    {
+      call(httpClient, "/")
+      throw AssertionError("The call should have been rejected")
+    }
+    catch (exception: AdaptiveConcurrencyLimiter.LimitExceededException)
+    {
+    }
+
+    response.close()
+    assertEquals(0, limiter.getInFlightCallsCount(HOST))
+    call(httpClient, "/")
+  }
+
+  @Throws(IOException::class)
+  private fun call(httpClient: OkHttpClient, path: String)
+  {
+    httpClient.newCall(Request.Builder().url(server.url(path)).build()).execute().close()
+  }
+
+}
@@ -0,0 +1,141 @@
+package test
+
+import com.smartnsoft.ws.okhttp.CachingDns
+import okhttp3.Dns
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.net.InetAddress
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks that the [CachingDns] serves the addresses from memory during their time-to-live, serves the stale ones while resolving them again in
+ * the background, and resolves a host only once at a time.
+ */
+class CachingDnsTest
+{
+
+  companion object
+  {
+
+    private const val HOST = "example.com"
+
+    private const val TIME_TO_LIVE_IN_MILLISECONDS = 200L
+
+    private const val STALE_DURATION_IN_MILLISECONDS = 400L
+  }
+
+  /**
+   * A resolver which returns a new address every time it is invoked.
+   */
+  private class CountingDns(private val latencyInMilliseconds: Long = 0) : Dns
+  {
+
+    val lookupsCount = AtomicInteger()
+
+    override fun lookup(hostname: String): List<InetAddress>
+    {
+      val lookupsCount = lookupsCount.incrementAndGet()
+      Thread.sleep(latencyInMilliseconds)
+      return listOf(InetAddress.getByAddress(hostname, byteArrayOf(10, 0, 0, lookupsCount.toByte())))
+    }
+  }
+
+  @Test
+  fun lookup_withinTimeToLive_isServedFromMemory()
+  {
+    val dns = CountingDns()
+    val cachingDns = CachingDns(dns, TIME_TO_LIVE_IN_MILLISECONDS, STALE_DURATION_IN_MILLISECONDS)
+
+    val addresses = cachingDns.lookup(HOST)
+
+    assertEquals(addresses, cachingDns.lookup(HOST))
+    assertEquals(1, dns.lookupsCount.get())
+  }
+
+  @Test
+  fun lookup_stale_isServedWhileResolvedAgain()
+  {
+    val dns = CountingDns()
+    val cachingDns = CachingDns(dns, TIME_TO_LIVE_IN_MILLISECONDS, STALE_DURATION_IN_MILLISECONDS)
+    val staleAddresses = cachingDns.lookup(HOST)
+
+    Thread.sleep(TIME_TO_LIVE_IN_MILLISECONDS + 50)
+
+    assertEquals(staleAddresses, cachingDns.lookup(HOST))
+    waitForLookups(dns, 2)
+    assertEquals(address(2), cachingDns.lookup(HOST)[0])
+  }
+
+  @Test
+  fun lookup_beyondStaleDuration_isResolvedAgain()
+  {
+    val dns = CountingDns()
+    val cachingDns = CachingDns(dns, TIME_TO_LIVE_IN_MILLISECONDS, STALE_DURATION_IN_MILLISECONDS)
+    cachingDns.lookup(HOST)
+
+    Thread.sleep(TIME_TO_LIVE_IN_MILLISECONDS + STALE_DURATION_IN_MILLISECONDS + 50)
+
+    assertEquals(address(2), cachingDns.lookup(HOST)[0])
+    assertEquals(2, dns.lookupsCount.get())
+  }
+
+  @Test
+  fun concurrentLookups_resolveTheHostOnce()
+  {
+    val dns = CountingDns(200)
+    val cachingDns = CachingDns(dns, TIME_TO_LIVE_IN_MILLISECONDS, STALE_DURATION_IN_MILLISECONDS)
+    val executor = Executors.newFixedThreadPool(5)
+
+    try
+    {
+      executor.invokeAll((1..5).map { Callable { cachingDns.lookup(HOST) } }).forEach { future ->
+        assertEquals(address(1), future.get()[0])
+      }
+    }
+    finally
+    {
+      executor.shutdown()
+    }
+
+    assertEquals(1, dns.lookupsCount.get())
+  }
+
+  @Test
+  fun prefetch_resolvesTheHostAhead()
+  {
+    val dns = CountingDns()
+    val cachingDns = CachingDns(dns, TIME_TO_LIVE_IN_MILLISECONDS, STALE_DURATION_IN_MILLISECONDS)
+
+    cachingDns.prefetch(HOST)
+    waitForLookups(dns, 1)
+
+    assertEquals(address(1), cachingDns.lookup(HOST)[0])
+    assertEquals(1, dns.lookupsCount.get())
+  }
+
+  private fun address(lookupsCount: Int): InetAddress =
+      InetAddress.getByAddress(HOST, byteArrayOf(10, 0, 0, lookupsCount.toByte()))
+
+  /**
+   * Waits for the background resolutions, and for the resolved addresses to be stored.
+   */
+  private fun waitForLookups(dns: CountingDns, lookupsCount: Int)
+  {
+    val start = System.currentTimeMillis()
+
+    while (dns.lookupsCount.get() < lookupsCount && System.currentTimeMillis() - start < 5000)
+    {
+      Thread.sleep(10)
+    }
+
+    Thread.sleep(50)
+    assertEquals(lookupsCount, dns.lookupsCount.get())
+  }
+
+}
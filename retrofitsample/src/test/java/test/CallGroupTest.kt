@@ -0,0 +1,150 @@
+package test
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallType
+import com.smartnsoft.ws.okhttp.CallGroup
+import com.smartnsoft.ws.okhttp.OkHttpClientWebServiceCaller
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks that cancelling a [CallGroup] cancels its running calls as well as the ones which join it later on, and only them, the coalesced
+ * requests included.
+ */
+class CallGroupTest
+{
+
+  companion object
+  {
+
+    private const val SLOW_RESPONSE_DELAY_IN_MILLISECONDS = 3000L
+  }
+
+  /**
+   * Puts the requests into the group named by their "Group" header.
+   */
+  private class CallGroupWebServiceCaller(private val callGroups: Map<String, CallGroup>, private val coalescing: Boolean = false)
+    : OkHttpClientWebServiceCaller(10000, 10000, false)
+  {
+
+    override fun getUrlEncoding(): String =
+        "UTF-8"
+
+    override fun getContentEncoding(): String =
+        "UTF-8"
+
+    override fun getCallGroup(uri: String, callType: CallType, headers: Map<String, String>?): CallGroup? =
+        headers?.get("Group")?.let { name -> callGroups[name] }
+
+    override fun isCoalescingRequest(uri: String, callType: CallType, headers: Map<String, String>?): Boolean =
+        coalescing
+  }
+
+  private lateinit var server: MockWebServer
+
+  private val executor = Executors.newCachedThreadPool()
+
+  @Before
+  fun setup()
+  {
+    server = MockWebServer()
+    server.dispatcher = object : Dispatcher()
+    {
+      override fun dispatch(request: RecordedRequest): MockResponse =
+          MockResponse().setBody("ok").setHeadersDelay(if (request.path == "/slow") SLOW_RESPONSE_DELAY_IN_MILLISECONDS else 0, TimeUnit.MILLISECONDS)
+    }
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    executor.shutdown()
+    server.shutdown()
+  }
+
+  @Test
+  fun cancelAll_cancelsTheRunningCallsOfTheGroupOnly()
+  {
+    val callGroup = CallGroup()
+    val otherCallGroup = CallGroup()
+    val serviceCaller = CallGroupWebServiceCaller(mapOf("group" to callGroup, "other" to otherCallGroup))
+
+    val calls = (1..3).map { executor.submit(Callable { runRequest(serviceCaller, "/slow", "group") }) }
+    val otherCall = executor.submit(Callable { runRequest(serviceCaller, "/slow", "other") })
+    while (callGroup.callsCount < 3 || otherCallGroup.callsCount < 1)
+    {
+      Thread.sleep(10)
+    }
+
+    val start = System.currentTimeMillis()
+    callGroup.cancelAll()
+
+    calls.forEach { call ->
+      assertEquals("failed", call.get())
+    }
+    assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_DELAY_IN_MILLISECONDS / 2)
+    assertEquals(0, callGroup.callsCount)
+    assertEquals("ok", otherCall.get())
+  }
+
+  @Test
+  fun cancelledGroup_cancelsTheCallsWhichJoinItLater()
+  {
+    val callGroup = CallGroup()
+    val serviceCaller = CallGroupWebServiceCaller(mapOf("group" to callGroup))
+
+    callGroup.cancelAll()
+
+    assertEquals("failed", runRequest(serviceCaller, "/", "group"))
+    assertEquals(0, server.requestCount)
+  }
+
+  @Test
+  fun cancelAll_cancelsTheCoalescedRequestsOfTheGroupOnly()
+  {
+    val callGroup = CallGroup()
+    val otherCallGroup = CallGroup()
+    val serviceCaller = CallGroupWebServiceCaller(mapOf("group" to callGroup, "other" to otherCallGroup), true)
+
+    val calls = (1..6).map { index -> executor.submit(Callable { runRequest(serviceCaller, "/slow", if (index % 2 == 0) "group" else "other") }) }
+    // The identical requests of each group share a single network request
+    while (callGroup.callsCount < 1 || otherCallGroup.callsCount < 1)
+    {
+      Thread.sleep(10)
+    }
+    Thread.sleep(100)
+    callGroup.cancelAll()
+
+    assertEquals(listOf("ok", "failed", "ok", "failed", "ok", "failed"), calls.map { call -> call.get() })
+    assertEquals(2, server.requestCount)
+  }
+
+  /**
+   * @return the body of the response, or "failed" if the request has failed
+   */
+  private fun runRequest(serviceCaller: CallGroupWebServiceCaller, path: String, group: String): String =
+      try
+      {
+        serviceCaller.runRequest(server.url(path).toString(), CallType.Get, mapOf("Group" to group), null, null, null).inputStream.use { inputStream -> inputStream.reader().readText() }
+      }
+      catch (exception: CallException)
+      {
+        "failed"
+      }
+
+}
@@ -0,0 +1,231 @@
+package test
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException
+import com.smartnsoft.ws.okhttp.CircuitBreaker
+import com.smartnsoft.ws.okhttp.OkHttpClientWebServiceCaller
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks the transitions of the circuit of a host: it opens once the failure rate or the slow call rate reaches its threshold, turns half-open
+ * after the open state duration, and then closes or opens again depending on the outcome of the trial calls, an unexpected exception counting as
+ * a failure.
+ */
+class CircuitBreakerTest
+{
+
+  companion object
+  {
+
+    private const val HOST = "localhost"
+
+    private const val OPEN_STATE_DURATION_IN_MILLISECONDS = 200L
+
+    private const val SLOW_CALL_DURATION_IN_MILLISECONDS = 1000L
+  }
+
+  /**
+   * The requests to the "/crash" path fail with an unexpected exception, raised by an interceptor.
+   */
+  private class CircuitBreakerWebServiceCaller(private val circuitBreaker: CircuitBreaker)
+    : OkHttpClientWebServiceCaller(5000, 5000, false)
+  {
+
+    override fun computeHttpClient(): OkHttpClient.Builder =
+        super.computeHttpClient().addInterceptor { chain ->
+          if (chain.request().url().encodedPath() == "/crash")
+          {
+            throw IllegalStateException("The interceptor has crashed")
+          }
+
+          chain.proceed(chain.request())
+        }
+
+    override fun getUrlEncoding(): String =
+        "UTF-8"
+
+    override fun getContentEncoding(): String =
+        "UTF-8"
+
+    override fun getCircuitBreaker(): CircuitBreaker =
+        circuitBreaker
+  }
+
+  private lateinit var server: MockWebServer
+
+  @Before
+  fun setup()
+  {
+    server = MockWebServer()
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    server.shutdown()
+  }
+
+  @Test
+  fun failures_reachThreshold_openTheCircuit()
+  {
+    val circuitBreaker = newCircuitBreaker()
+
+    repeat(3) {
+      assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+      circuitBreaker.onCallOver(HOST, false, 10)
+    }
+    assertEquals(CircuitBreaker.State.Closed, circuitBreaker.getState(HOST))
+
+    repeat(3) {
+      assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+      circuitBreaker.onCallOver(HOST, true, 10)
+    }
+    assertEquals(CircuitBreaker.State.Open, circuitBreaker.getState(HOST))
+    assertFalse(circuitBreaker.tryAcquirePermission(HOST))
+
+    // The other hosts are not affected
+    assertTrue(circuitBreaker.tryAcquirePermission("other.host"))
+  }
+
+  @Test
+  fun slowCalls_reachThreshold_openTheCircuit()
+  {
+    val circuitBreaker = newCircuitBreaker()
+
+    repeat(4) {
+      assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+      circuitBreaker.onCallOver(HOST, false, SLOW_CALL_DURATION_IN_MILLISECONDS)
+    }
+
+    assertEquals(CircuitBreaker.State.Open, circuitBreaker.getState(HOST))
+  }
+
+  @Test
+  fun openCircuit_afterOpenStateDuration_closesOnceTheTrialCallsSucceed()
+  {
+    val circuitBreaker = newCircuitBreaker()
+    open(circuitBreaker)
+
+    Thread.sleep(OPEN_STATE_DURATION_IN_MILLISECONDS + 50)
+    assertEquals(CircuitBreaker.State.HalfOpen, circuitBreaker.getState(HOST))
+
+    // Only the trial calls are let through
+    assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+    assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+    assertFalse(circuitBreaker.tryAcquirePermission(HOST))
+
+    circuitBreaker.onCallOver(HOST, false, 10)
+    assertEquals(CircuitBreaker.State.HalfOpen, circuitBreaker.getState(HOST))
+    circuitBreaker.onCallOver(HOST, false, 10)
+    assertEquals(CircuitBreaker.State.Closed, circuitBreaker.getState(HOST))
+  }
+
+  @Test
+  fun halfOpenCircuit_trialCallFails_opensAgain()
+  {
+    val circuitBreaker = newCircuitBreaker()
+    open(circuitBreaker)
+
+    Thread.sleep(OPEN_STATE_DURATION_IN_MILLISECONDS + 50)
+    assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+    circuitBreaker.onCallOver(HOST, true, 10)
+
+    assertEquals(CircuitBreaker.State.Open, circuitBreaker.getState(HOST))
+    assertFalse(circuitBreaker.tryAcquirePermission(HOST))
+  }
+
+  @Test
+  fun halfOpenCircuit_trialCallCanceled_givesBackItsSlot()
+  {
+    val circuitBreaker = newCircuitBreaker()
+    open(circuitBreaker)
+
+    Thread.sleep(OPEN_STATE_DURATION_IN_MILLISECONDS + 50)
+    assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+    assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+    circuitBreaker.onCallCanceled(HOST)
+
+    assertTrue(circuitBreaker.tryAcquirePermission(HOST))
+    assertEquals(CircuitBreaker.State.HalfOpen, circuitBreaker.getState(HOST))
+  }
+
+  @Test
+  fun runRequest_openCircuit_failsWithoutReachingTheServer()
+  {
+    repeat(4) {
+      server.enqueue(MockResponse().setResponseCode(500))
+    }
+    val serviceCaller = CircuitBreakerWebServiceCaller(newCircuitBreaker())
+    val url = server.url("/").toString()
+
+    repeat(4) {
+      try
+      {
+        serviceCaller.runRequest(url)
+      }
+      catch (exception: CallException)
+      {
+      }
+    }
+    assertEquals(4, server.requestCount)
+
+    try
+    {
+      serviceCaller.runRequest(url)
+      throw AssertionError("The request should have failed")
+    }
+    catch (exception: CallException)
+    {
+      assertTrue(exception.cause is CircuitBreaker.CircuitOpenException)
+      assertEquals(4, server.requestCount)
+    }
+  }
+
+  @Test
+  fun halfOpenCircuit_trialCallThrowsAnUnexpectedException_opensAgain()
+  {
+    val circuitBreaker = newCircuitBreaker()
+    val serviceCaller = CircuitBreakerWebServiceCaller(circuitBreaker)
+    open(circuitBreaker)
+
+    Thread.sleep(OPEN_STATE_DURATION_IN_MILLISECONDS + 50)
+    try
+    {
+      serviceCaller.runRequest(server.url("/crash").toString())
+      throw AssertionError("The request should have failed")
+    }
+    catch (exception: Exception)
+    {
+    }
+
+    // The trial call has been held against the host, instead of keeping its slot forever
+    assertEquals(CircuitBreaker.State.Open, circuitBreaker.getState(HOST))
+    assertEquals(0, server.requestCount)
+  }
+
+  private fun newCircuitBreaker(): CircuitBreaker =
+      CircuitBreaker(0.5f, 0.8f, SLOW_CALL_DURATION_IN_MILLISECONDS, 10, 4, OPEN_STATE_DURATION_IN_MILLISECONDS, 2)
+
+  private fun open(circuitBreaker: CircuitBreaker)
+  {
+    repeat(4) {
+      circuitBreaker.tryAcquirePermission(HOST)
+      circuitBreaker.onCallOver(HOST, true, 10)
+    }
+
+    assertEquals(CircuitBreaker.State.Open, circuitBreaker.getState(HOST))
+  }
+
+}
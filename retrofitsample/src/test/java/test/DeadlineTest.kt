@@ -0,0 +1,234 @@
+package test
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallType
+import com.smartnsoft.ws.okhttp.Deadline
+import com.smartnsoft.ws.okhttp.OkHttpClientWebServiceCaller
+import com.smartnsoft.ws.okhttp.PriorityScheduler
+import com.smartnsoft.ws.okhttp.RetryPolicy
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.InterruptedIOException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks that the [Deadline] of a call shrinks the time-outs of its attempts, bounds its retries, those asked by the
+ * [OkHttpClientWebServiceCaller.onStatusCodeNotOk] method included, and bounds the time it waits for a [PriorityScheduler] slot or for an
+ * identical request in flight.
+ */
+class DeadlineTest
+{
+
+  companion object
+  {
+
+    private const val DEADLINE_IN_MILLISECONDS = 300L
+
+    private const val SLOW_RESPONSE_DELAY_IN_MILLISECONDS = 3000L
+  }
+
+  private class DeadlineWebServiceCaller(private val retryPolicy: RetryPolicy? = null, private val priorityScheduler: PriorityScheduler? = null,
+                                         private val coalescing: Boolean = false)
+    : OkHttpClientWebServiceCaller(10000, 10000, false)
+  {
+
+    val attemptsCount = AtomicInteger()
+
+    override fun getUrlEncoding(): String =
+        "UTF-8"
+
+    override fun getContentEncoding(): String =
+        "UTF-8"
+
+    override fun getRetryPolicy(): RetryPolicy? =
+        retryPolicy
+
+    override fun getPriorityScheduler(): PriorityScheduler? =
+        priorityScheduler
+
+    override fun isCoalescingRequest(uri: String, callType: CallType, headers: Map<String, String>?): Boolean =
+        coalescing
+
+    // The "Block" header does not prevent the requests from being coalesced
+    override fun getCoalescingHeaderNames(): List<String> =
+        emptyList()
+
+    // The calls which block the scheduler, or which lead the coalesced requests, have no deadline
+    override fun getDeadlineInMilliseconds(uri: String, callType: CallType, headers: Map<String, String>?): Long =
+        if (uri.endsWith("/block") || headers?.containsKey("Block") == true) -1 else DEADLINE_IN_MILLISECONDS
+
+    override fun onBeforeHttpRequestExecution(httpClient: OkHttpClient, requestBuilder: Request.Builder, callType: CallType)
+    {
+      super.onBeforeHttpRequestExecution(httpClient, requestBuilder, callType)
+      attemptsCount.incrementAndGet()
+    }
+
+    // Asks for the request to be run again, once its deadline has expired
+    override fun onStatusCodeNotOk(uri: String, callType: CallType, request: Request, headers: Map<String, String>?, response: Response,
+                                   attemptsCount: Int): Boolean
+    {
+      Thread.sleep(DEADLINE_IN_MILLISECONDS + 50)
+      return true
+    }
+  }
+
+  private lateinit var server: MockWebServer
+
+  @Before
+  fun setup()
+  {
+    server = MockWebServer()
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    server.shutdown()
+  }
+
+  @Test
+  fun slowResponse_failsOnceTheDeadlineHasExpired()
+  {
+    server.enqueue(MockResponse().setBody("slow").setHeadersDelay(SLOW_RESPONSE_DELAY_IN_MILLISECONDS, TimeUnit.MILLISECONDS))
+    val serviceCaller = DeadlineWebServiceCaller()
+
+    val start = System.currentTimeMillis()
+    val exception = runFailingRequest(serviceCaller, "/")
+
+    assertTrue(exception.cause is InterruptedIOException)
+    assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_DELAY_IN_MILLISECONDS / 2)
+  }
+
+  @Test
+  fun retryAfterTheDeadline_isNotMade()
+  {
+    server.enqueue(MockResponse().setResponseCode(503).setHeader("Retry-After", "1"))
+    server.enqueue(MockResponse().setBody("ok"))
+    val serviceCaller = DeadlineWebServiceCaller(retryPolicy = RetryPolicy())
+
+    val start = System.currentTimeMillis()
+    runFailingRequest(serviceCaller, "/")
+
+    assertEquals(1, server.requestCount)
+    assertTrue(System.currentTimeMillis() - start < 1000)
+  }
+
+  @Test
+  fun waitForAPrioritySlot_isBoundedByTheDeadline()
+  {
+    server.enqueue(MockResponse().setBody("block").setHeadersDelay(SLOW_RESPONSE_DELAY_IN_MILLISECONDS, TimeUnit.MILLISECONDS))
+    val priorityScheduler = PriorityScheduler(1, 0, 1, PriorityScheduler.DEFAULT_AGING_INTERVAL_IN_MILLISECONDS)
+    val serviceCaller = DeadlineWebServiceCaller(priorityScheduler = priorityScheduler)
+    val executor = Executors.newSingleThreadExecutor()
+
+    try
+    {
+      val blockingCall = executor.submit { serviceCaller.runRequest(server.url("/block").toString()).inputStream.close() }
+      while (priorityScheduler.callsCount == 0)
+      {
+        Thread.sleep(10)
+      }
+
+      val start = System.currentTimeMillis()
+      val exception = runFailingRequest(serviceCaller, "/")
+
+      assertTrue(exception.cause is Deadline.DeadlineExceededException)
+      assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_DELAY_IN_MILLISECONDS / 2)
+      assertEquals(0, priorityScheduler.waitingCallsCount)
+      blockingCall.get()
+    }
+    finally
+    {
+      executor.shutdown()
+    }
+  }
+
+  @Test
+  fun rerunAskedByOnStatusCodeNotOk_afterTheDeadline_isNotMade()
+  {
+    server.enqueue(MockResponse().setResponseCode(401))
+    server.enqueue(MockResponse().setBody("ok"))
+    val serviceCaller = DeadlineWebServiceCaller()
+
+    val exception = runFailingRequest(serviceCaller, "/")
+
+    assertTrue(exception.cause is Deadline.DeadlineExceededException)
+    assertEquals(1, serviceCaller.attemptsCount.get())
+    assertEquals(1, server.requestCount)
+  }
+
+  @Test
+  fun waitForAnIdenticalRequestInFlight_isBoundedByTheDeadline()
+  {
+    server.enqueue(MockResponse().setBody("slow").setHeadersDelay(SLOW_RESPONSE_DELAY_IN_MILLISECONDS, TimeUnit.MILLISECONDS))
+    val serviceCaller = DeadlineWebServiceCaller(coalescing = true)
+    val url = server.url("/").toString()
+    val executor = Executors.newSingleThreadExecutor()
+
+    try
+    {
+      val leadingCall = executor.submit { serviceCaller.runRequest(url, CallType.Get, mapOf("Block" to "true"), null, null, null).inputStream.close() }
+      while (server.requestCount == 0)
+      {
+        Thread.sleep(10)
+      }
+
+      val start = System.currentTimeMillis()
+      val exception = runFailingRequest(serviceCaller, "/")
+
+      assertTrue(exception.cause is Deadline.DeadlineExceededException)
+      assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_DELAY_IN_MILLISECONDS / 2)
+      leadingCall.get()
+      assertEquals(1, server.requestCount)
+    }
+    finally
+    {
+      executor.shutdown()
+    }
+  }
+
+  @Test
+  fun expiredDeadline_preventsTheAttempt()
+  {
+    server.enqueue(MockResponse().setBody("ok"))
+    val httpClient = OkHttpClient.Builder().addInterceptor(Deadline.DeadlineInterceptor()).build()
+    val request = Request.Builder().url(server.url("/")).tag(Deadline::class.java, Deadline(System.currentTimeMillis() - 1)).build()
+
+    try
+    {
+      httpClient.newCall(request).execute()
+      throw AssertionError("The call should have failed")
+    }
+    catch (exception: Deadline.DeadlineExceededException)
+    {
+      assertEquals(0, server.requestCount)
+    }
+  }
+
+  private fun runFailingRequest(serviceCaller: DeadlineWebServiceCaller, path: String): CallException =
+      try
+      {
+        serviceCaller.runRequest(server.url(path).toString())
+        throw AssertionError("The request should have failed")
+      }
+      catch (exception: CallException)
+      {
+        exception
+      }
+
+}
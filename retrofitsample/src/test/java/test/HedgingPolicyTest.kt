@@ -0,0 +1,98 @@
+package test
+
+import com.smartnsoft.ws.okhttp.HedgingPolicy
+import com.smartnsoft.ws.okhttp.OkHttpClientWebServiceCaller
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks that a slow GET request is sent a second time once the hedging delay has elapsed, the first response being kept, and that the hedging
+ * budget bounds the number of the hedged requests.
+ */
+class HedgingPolicyTest
+{
+
+  companion object
+  {
+
+    private const val HEDGING_DELAY_IN_MILLISECONDS = 100L
+
+    private const val SLOW_RESPONSE_DELAY_IN_MILLISECONDS = 3000L
+  }
+
+  private class HedgingWebServiceCaller(private val hedgingPolicy: HedgingPolicy)
+    : OkHttpClientWebServiceCaller(10000, 10000, false)
+  {
+
+    override fun getUrlEncoding(): String =
+        "UTF-8"
+
+    override fun getContentEncoding(): String =
+        "UTF-8"
+
+    override fun getHedgingPolicy(): HedgingPolicy =
+        hedgingPolicy
+  }
+
+  private lateinit var server: MockWebServer
+
+  private val requestsCount = AtomicInteger()
+
+  @Before
+  fun setup()
+  {
+    server = MockWebServer()
+    // Only the first request is slow
+    server.dispatcher = object : Dispatcher()
+    {
+      override fun dispatch(request: RecordedRequest): MockResponse =
+          if (requestsCount.incrementAndGet() == 1) MockResponse().setBody("slow").setHeadersDelay(SLOW_RESPONSE_DELAY_IN_MILLISECONDS, TimeUnit.MILLISECONDS) else MockResponse().setBody("fast")
+    }
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    server.shutdown()
+  }
+
+  @Test
+  fun slowRequest_isHedged()
+  {
+    val serviceCaller = HedgingWebServiceCaller(HedgingPolicy(HEDGING_DELAY_IN_MILLISECONDS, 1.0))
+
+    val start = System.currentTimeMillis()
+    val body = serviceCaller.runRequest(server.url("/").toString()).inputStream.use { inputStream -> inputStream.reader().readText() }
+
+    assertEquals("fast", body)
+    assertEquals(2, server.requestCount)
+    assertTrue(System.currentTimeMillis() - start < SLOW_RESPONSE_DELAY_IN_MILLISECONDS)
+  }
+
+  @Test
+  fun slowRequest_withoutHedgingBudget_isNotHedged()
+  {
+    // A request only earns a tenth of a hedged request
+    val serviceCaller = HedgingWebServiceCaller(HedgingPolicy(HEDGING_DELAY_IN_MILLISECONDS, 0.1))
+
+    val body = serviceCaller.runRequest(server.url("/").toString()).inputStream.use { inputStream -> inputStream.reader().readText() }
+
+    assertEquals("slow", body)
+    assertEquals(1, server.requestCount)
+  }
+
+}
@@ -0,0 +1,102 @@
+package test
+
+import com.smartnsoft.logger.LoggerFactory
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Measures the throughput of [LoggerFactory.getInstance] from a single thread and from many concurrent threads, which should be alike per
+ * processor since getting a logger neither locks nor allocates once it has been created.
+ */
+class LoggerFactoryBenchmark
+{
+
+  companion object
+  {
+
+    private const val CALLS_COUNT = 500_000
+
+    private const val THREADS_COUNT = 16
+
+    /**
+     * Each configuration is run that many times and its best run is kept, so that a single preemption of the test does not fail it.
+     */
+    private const val RUNS_COUNT = 3
+
+    /**
+     * The share of the ideal throughput the concurrent threads must reach. Without any contention, the threads would reach the single thread
+     * throughput times the number of processors they run on: half of it leaves room for the processors which share their cores or lower their
+     * frequency when they are all busy, while a lock or an allocation per call, which serializes the threads or makes them wait for the garbage
+     * collector, costs far more than that.
+     */
+    private const val MINIMUM_SPEEDUP_RATIO = 0.5
+
+  }
+
+  @Test
+  fun getInstance_concurrentThreads_comparedToSingleThread()
+  {
+    val logger = LoggerFactory.getInstance(LoggerFactoryBenchmark::class.java)
+
+    // Warms up the JIT
+    runCalls(1)
+    runCalls(THREADS_COUNT)
+
+    val singleThreadDurationInNanoseconds = (1..RUNS_COUNT).map { runCalls(1) }.min() ?: 0L
+    val concurrentThreadsDurationInNanoseconds = (1..RUNS_COUNT).map { runCalls(THREADS_COUNT) }.min() ?: 0L
+
+    assertSame(logger, LoggerFactory.getInstance(LoggerFactoryBenchmark::class.java))
+
+    // The throughput, i.e. the number of calls per nanosecond, of all the threads together, compared to the one of the single thread
+    val speedup = (THREADS_COUNT.toDouble() * CALLS_COUNT / concurrentThreadsDurationInNanoseconds) / (CALLS_COUNT.toDouble() / singleThreadDurationInNanoseconds)
+    val processorsCount = Runtime.getRuntime().availableProcessors()
+    val minimumSpeedup = Math.min(processorsCount, THREADS_COUNT) * MINIMUM_SPEEDUP_RATIO
+    assertTrue("$THREADS_COUNT threads run ${"%.2f".format(speedup)} times as many calls per second as a single thread on $processorsCount processors, whereas at least ${"%.2f".format(minimumSpeedup)} times are expected",
+        speedup >= minimumSpeedup)
+  }
+
+  /**
+   * @return the time it took the given number of threads to run [CALLS_COUNT] calls each, from the moment they all start until the last one is over
+   */
+  private fun runCalls(threadsCount: Int): Long
+  {
+    val executor = Executors.newFixedThreadPool(threadsCount)
+    val readySignal = CountDownLatch(threadsCount)
+    val startSignal = CountDownLatch(1)
+
+    try
+    {
+      val futures = (1..threadsCount).map {
+        executor.submit {
+          readySignal.countDown()
+          startSignal.await()
+          for (index in 0 until CALLS_COUNT)
+          {
+            LoggerFactory.getInstance(LoggerFactoryBenchmark::class.java)
+          }
+        }
+      }
+      readySignal.await()
+
+      val start = System.nanoTime()
+      startSignal.countDown()
+      futures.forEach { future ->
+        future.get()
+      }
+
+      return System.nanoTime() - start
+    }
+    finally
+    {
+      executor.shutdown()
+    }
+  }
+
+}
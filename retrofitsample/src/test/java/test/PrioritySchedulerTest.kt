@@ -0,0 +1,152 @@
+package test
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallType
+import com.smartnsoft.ws.okhttp.OkHttpClientWebServiceCaller
+import com.smartnsoft.ws.okhttp.PriorityScheduler
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks that the [PriorityScheduler] runs the waiting calls in the order of their priority, that the waiting calls age so that the low priority
+ * ones cannot starve, and that a call holds its slot until its response body is consumed.
+ */
+class PrioritySchedulerTest
+{
+
+  companion object
+  {
+
+    private const val BLOCKING_CALL_DURATION_IN_MILLISECONDS = 1000L
+  }
+
+  private class PriorityWebServiceCaller(private val priorityScheduler: PriorityScheduler)
+    : OkHttpClientWebServiceCaller(5000, 5000, false)
+  {
+
+    override fun getUrlEncoding(): String =
+        "UTF-8"
+
+    override fun getContentEncoding(): String =
+        "UTF-8"
+
+    override fun getPriorityScheduler(): PriorityScheduler =
+        priorityScheduler
+
+    override fun getPriority(uri: String, callType: CallType, headers: Map<String, String>?): PriorityScheduler.Priority =
+        when
+        {
+          uri.endsWith("/low")  -> PriorityScheduler.Priority.Low
+          uri.endsWith("/high") -> PriorityScheduler.Priority.High
+          else                  -> PriorityScheduler.Priority.Normal
+        }
+  }
+
+  private lateinit var server: MockWebServer
+
+  private val executor = Executors.newCachedThreadPool()
+
+  @Before
+  fun setup()
+  {
+    server = MockWebServer()
+    server.dispatcher = object : Dispatcher()
+    {
+      override fun dispatch(request: RecordedRequest): MockResponse =
+          if (request.path == "/block") MockResponse().setBody("block").setHeadersDelay(BLOCKING_CALL_DURATION_IN_MILLISECONDS, TimeUnit.MILLISECONDS) else MockResponse().setBody("ok")
+    }
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    executor.shutdown()
+    server.shutdown()
+  }
+
+  @Test
+  fun waitingCalls_runInTheOrderOfTheirPriority()
+  {
+    val priorityScheduler = PriorityScheduler(1, 0, 1, 60 * 1000)
+    val serviceCaller = PriorityWebServiceCaller(priorityScheduler)
+
+    val futures = listOf("/block", "/low", "/normal", "/high").mapIndexed { index, path ->
+      runRequest(serviceCaller, path).also {
+        waitForCalls(priorityScheduler, index + 1)
+      }
+    }
+    futures.forEach { future ->
+      future.get()
+    }
+
+    assertEquals(listOf("/block", "/high", "/normal", "/low"), (1..4).map { server.takeRequest().path })
+  }
+
+  @Test
+  fun waitingLowPriorityCall_ages()
+  {
+    val priorityScheduler = PriorityScheduler(1, 0, 1, 100)
+    val serviceCaller = PriorityWebServiceCaller(priorityScheduler)
+
+    val blockingCall = runRequest(serviceCaller, "/block")
+    waitForCalls(priorityScheduler, 1)
+    val lowPriorityCall = runRequest(serviceCaller, "/low")
+    waitForCalls(priorityScheduler, 2)
+
+    // Having waited for more than two aging intervals, the low priority call now ranks before a new high priority call
+    Thread.sleep(300)
+    val highPriorityCall = runRequest(serviceCaller, "/high")
+    listOf(blockingCall, lowPriorityCall, highPriorityCall).forEach { future ->
+      future.get()
+    }
+
+    assertEquals(listOf("/block", "/low", "/high"), (1..3).map { server.takeRequest().path })
+  }
+
+  @Test
+  fun call_holdsItsSlotUntilItsResponseBodyIsConsumed()
+  {
+    val priorityScheduler = PriorityScheduler()
+    val httpClient = OkHttpClient.Builder().addInterceptor(priorityScheduler).build()
+
+    val response = httpClient.newCall(Request.Builder().url(server.url("/")).build()).execute()
+    assertEquals(1, priorityScheduler.callsCount)
+
+    response.close()
+    assertEquals(0, priorityScheduler.callsCount)
+  }
+
+  private fun runRequest(serviceCaller: PriorityWebServiceCaller, path: String): Future<*> =
+      executor.submit {
+        serviceCaller.runRequest(server.url(path).toString()).inputStream.close()
+      }
+
+  /**
+   * Waits for the calls which have been submitted to hold the slot or to wait for it.
+   */
+  private fun waitForCalls(priorityScheduler: PriorityScheduler, callsCount: Int)
+  {
+    val start = System.currentTimeMillis()
+
+    while (priorityScheduler.callsCount + priorityScheduler.waitingCallsCount < callsCount && System.currentTimeMillis() - start < 5000)
+    {
+      Thread.sleep(10)
+    }
+  }
+
+}
@@ -0,0 +1,170 @@
+package test
+
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallException
+import com.smartnsoft.droid4me.ws.WebServiceClient.CallType
+import com.smartnsoft.ws.okhttp.OkHttpClientWebServiceCaller
+import com.smartnsoft.ws.okhttp.RetryPolicy
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.TimeZone
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Checks that the [RetryPolicy] honors the `Retry-After` header, and that the retry budget of a host stops the retries once exhausted, until
+ * enough requests have succeeded.
+ */
+class RetryPolicyTest
+{
+
+  companion object
+  {
+
+    private const val HOST = "localhost"
+  }
+
+  private class RetryWebServiceCaller(private val retryPolicy: RetryPolicy)
+    : OkHttpClientWebServiceCaller(5000, 5000, false)
+  {
+
+    override fun getUrlEncoding(): String =
+        "UTF-8"
+
+    override fun getContentEncoding(): String =
+        "UTF-8"
+
+    override fun getRetryPolicy(): RetryPolicy =
+        retryPolicy
+  }
+
+  private lateinit var server: MockWebServer
+
+  @Before
+  fun setup()
+  {
+    server = MockWebServer()
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    server.shutdown()
+  }
+
+  @Test
+  fun retryAfter_inSeconds_delaysTheRetry()
+  {
+    val retryPolicy = RetryPolicy(3, 10, 5000, 10, 0.1)
+
+    assertEquals(2000, retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, "2"), null))
+  }
+
+  @Test
+  fun retryAfter_asHttpDate_delaysTheRetry()
+  {
+    val retryPolicy = RetryPolicy(3, 10, 5000, 10, 0.1)
+    val retryDelayInMilliseconds = retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, formatHttpDate(Date(System.currentTimeMillis() + 3000))), null)
+
+    // The HTTP dates have a one second precision
+    assertTrue("$retryDelayInMilliseconds ms", retryDelayInMilliseconds in 1000..3000)
+  }
+
+  @Test
+  fun retryAfter_beyondMaximumBackoff_doesNotRetry()
+  {
+    val retryPolicy = RetryPolicy(3, 10, 5000, 10, 0.1)
+
+    assertEquals(-1, retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, "60"), null))
+  }
+
+  @Test
+  fun nonIdempotentRequest_doesNotRetry()
+  {
+    val retryPolicy = RetryPolicy(3, 10, 5000, 10, 0.1)
+
+    assertEquals(-1, retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Post, 1, buildResponse(503, "0"), null))
+  }
+
+  @Test
+  fun retryBudget_exhausted_stopsTheRetriesUntilRefilled()
+  {
+    val retryPolicy = RetryPolicy(10, 10, 5000, 2, 0.5)
+
+    assertTrue(retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, null), null) >= 0)
+    assertTrue(retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, null), null) >= 0)
+    assertEquals(-1, retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, null), null))
+
+    // The budget of another host is not affected
+    assertTrue(retryPolicy.computeRetryDelayInMilliseconds("other.host", CallType.Get, 1, buildResponse(503, null), null) >= 0)
+
+    // Two successful responses give back one token
+    retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(200, null), null)
+    retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(200, null), null)
+    assertTrue(retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, null), null) >= 0)
+    assertEquals(-1, retryPolicy.computeRetryDelayInMilliseconds(HOST, CallType.Get, 1, buildResponse(503, null), null))
+  }
+
+  @Test
+  fun runRequest_serviceUnavailableWithRetryAfter_isRetried()
+  {
+    server.enqueue(MockResponse().setResponseCode(503).setHeader("Retry-After", "1"))
+    server.enqueue(MockResponse().setBody("ok"))
+    val serviceCaller = RetryWebServiceCaller(RetryPolicy(3, 10, 5000, 10, 0.1))
+
+    val start = System.currentTimeMillis()
+    serviceCaller.runRequest(server.url("/").toString()).inputStream.close()
+
+    assertEquals(2, server.requestCount)
+    assertTrue(System.currentTimeMillis() - start >= 1000)
+  }
+
+  @Test
+  fun runRequest_maximumAttemptsReached_fails()
+  {
+    repeat(3) {
+      server.enqueue(MockResponse().setResponseCode(503))
+    }
+    val serviceCaller = RetryWebServiceCaller(RetryPolicy(2, 10, 5000, 10, 0.1))
+
+    try
+    {
+      serviceCaller.runRequest(server.url("/").toString())
+      throw AssertionError("The request should have failed")
+    }
+    catch (exception: CallException)
+    {
+      assertEquals(2, server.requestCount)
+    }
+  }
+
+  private fun buildResponse(statusCode: Int, retryAfter: String?): Response =
+      Response.Builder()
+          .request(Request.Builder().url("http://$HOST/").build())
+          .protocol(Protocol.HTTP_1_1)
+          .code(statusCode)
+          .message("")
+          .apply {
+            retryAfter?.also { value ->
+              header("Retry-After", value)
+            }
+          }
+          .build()
+
+  private fun formatHttpDate(date: Date): String =
+      SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).apply { timeZone = TimeZone.getTimeZone("GMT") }.format(date)
+
+}
@@ -0,0 +1,111 @@
+package test
+
+import com.smartnsoft.retrofitsample.ws.WSApi
+import com.smartnsoft.ws.retrofit.caller.JacksonRetrofitWebServiceCaller
+import com.smartnsoft.ws.okhttp.VirtualThreads
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * @since 2026.10.17
+ */
+
+/**
+ * Compares the throughput of blocking calls run from a fixed pool of platform threads with the one of the same calls run from virtual threads:
+ * since the calls run on their calling thread, the virtual threads are only limited by the latency of the server, not by the size of a pool.
+ * Only runs on a JVM which provides virtual threads.
+ */
+class VirtualThreadsBenchmark
+{
+
+  companion object
+  {
+
+    private const val CALLS_COUNT = 200
+
+    private const val POOL_SIZE = 16
+
+    private const val SERVER_LATENCY_IN_MILLISECONDS = 50L
+  }
+
+  private class BenchmarkWebServiceCaller(baseUrl: String)
+    : JacksonRetrofitWebServiceCaller<WSApi>(api = WSApi::class.java, baseUrl = baseUrl, withBuiltInCache = null)
+  {
+
+    fun getString(): String? =
+        execute(service.getString())
+  }
+
+  private lateinit var server: MockWebServer
+
+  @Before
+  fun setup()
+  {
+    assumeTrue(VirtualThreads.isAvailable())
+
+    server = MockWebServer()
+    server.dispatcher = object : Dispatcher()
+    {
+      override fun dispatch(request: RecordedRequest): MockResponse =
+          MockResponse().setBody("pong").setBodyDelay(SERVER_LATENCY_IN_MILLISECONDS, TimeUnit.MILLISECONDS)
+    }
+    server.start()
+  }
+
+  @After
+  fun tearDown()
+  {
+    if (::server.isInitialized)
+    {
+      server.shutdown()
+    }
+  }
+
+  @Test
+  fun blockingCalls_virtualThreads_comparedToFixedPool()
+  {
+    val serviceCaller = BenchmarkWebServiceCaller(server.url("/").toString())
+
+    // Warms up the connection pool and the JIT
+    runCalls(serviceCaller, Executors.newFixedThreadPool(POOL_SIZE))
+
+    val fixedPoolDurationInMilliseconds = runCalls(serviceCaller, Executors.newFixedThreadPool(POOL_SIZE))
+    val virtualThreadsDurationInMilliseconds = runCalls(serviceCaller, VirtualThreads.newVirtualThreadPerTaskExecutor())
+
+    // The fixed pool cannot take less than (CALLS_COUNT / POOL_SIZE) * SERVER_LATENCY_IN_MILLISECONDS, whereas the virtual threads run all the calls at once
+    assertTrue("$virtualThreadsDurationInMilliseconds ms with virtual threads, whereas $fixedPoolDurationInMilliseconds ms with a fixed pool of $POOL_SIZE platform threads",
+        virtualThreadsDurationInMilliseconds * 2 < fixedPoolDurationInMilliseconds)
+  }
+
+  private fun runCalls(serviceCaller: BenchmarkWebServiceCaller, executor: ExecutorService): Long
+  {
+    val start = System.nanoTime()
+
+    try
+    {
+      val futures = executor.invokeAll((1..CALLS_COUNT).map { Callable { serviceCaller.getString() } })
+      futures.forEach { future ->
+        assertEquals("pong", future.get())
+      }
+    }
+    finally
+    {
+      executor.shutdown()
+    }
+
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+  }
+
+}
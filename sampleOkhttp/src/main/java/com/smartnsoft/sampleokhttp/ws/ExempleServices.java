@@ -92,8 +92,7 @@ public final class ExempleServices
   public Post getAPost()
       throws CallException
   {
-    final HttpResponse httpResponse = runRequest(ExempleServices.URL + "/posts/1");
-    return jacksonParser.deserializeJson(httpResponse.inputStream, Post.class);
+    return runRequest(ExempleServices.URL + "/posts/1", Post.class);
   }
 
   public List<Post> getPostsForUserId(String userId)
@@ -102,8 +101,7 @@ public final class ExempleServices
     final Map<String, String> parameters = new HashMap<>();
     parameters.put("userId", userId);
 
-    final HttpResponse httpResponse = runRequest(computeUri(ExempleServices.URL, "posts", parameters));
-    return jacksonParser.deserializeJson(httpResponse.inputStream, new TypeReference<List<Post>>() {});
+    return runRequest(computeUri(ExempleServices.URL, "posts", parameters), new TypeReference<List<Post>>() {});
   }
 
   public Post postAPost(Post post)